@@ -0,0 +1,15 @@
+package com.github.zottaa.binarytree
+
+import android.app.Application
+import java.io.File
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+//Holds the journal and the executor that serializes every access to it for the whole process.
+//An Activity recreated after a rotation shares both with the one it replaces, so two Journals
+//never work on the same directory and a compaction still running is finished before the next load.
+class BinaryTreeApplication : Application() {
+    val executor: ExecutorService = Executors.newSingleThreadExecutor()
+
+    val journal: Journal by lazy { Journal(File(filesDir, "journal")) }
+}
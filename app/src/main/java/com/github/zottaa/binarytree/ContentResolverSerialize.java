@@ -0,0 +1,93 @@
+package com.github.zottaa.binarytree;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+//Opens content Uris as channels for Serialize: seekable descriptors go through a FileChannel,
+//other providers fall back to their streams. Failures propagate as IOException.
+public class ContentResolverSerialize {
+    private final Serialize.Base serialize = new Serialize.Base();
+
+    public void setErrorListener(ParseErrorListener errorListener) {
+        serialize.setErrorListener(errorListener);
+    }
+
+    public int getErrorCount() {
+        return serialize.getErrorCount();
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        serialize.setProgressListener(progressListener);
+    }
+
+    public void serialize(BinaryTree<UserType> tree, Uri uri, String type, ContentResolver contentResolver) throws IOException {
+        try (WritableByteChannel channel = openWritable(uri, contentResolver)) {
+            serialize.serialize(tree, type, channel);
+        }
+    }
+
+    public void serializeBinary(BinaryTree<UserType> tree, Uri uri, String type, ContentResolver contentResolver) throws IOException {
+        try (WritableByteChannel channel = openWritable(uri, contentResolver)) {
+            serialize.serializeBinary(tree, type, channel);
+        }
+    }
+
+    public void serializeCompressed(BinaryTree<UserType> tree, Uri uri, String type, boolean checksum, ContentResolver contentResolver) throws IOException {
+        try (WritableByteChannel channel = openWritable(uri, contentResolver)) {
+            serialize.serializeCompressed(tree, type, checksum, channel);
+        }
+    }
+
+    public BinaryTree<UserType> deserialize(Uri uri, ContentResolver contentResolver) throws IOException {
+        try (ReadableByteChannel channel = openReadable(uri, contentResolver)) {
+            return serialize.deserialize(channel);
+        }
+    }
+
+    public BinaryTree<UserType> deserializeParallel(Uri uri, ContentResolver contentResolver) throws IOException {
+        try (ReadableByteChannel channel = openReadable(uri, contentResolver)) {
+            return serialize.deserializeParallel(channel);
+        }
+    }
+
+    private static WritableByteChannel openWritable(Uri uri, ContentResolver contentResolver) throws IOException {
+        ParcelFileDescriptor descriptor = openDescriptor(uri, "wt", contentResolver);
+        if (descriptor != null) {
+            return new ParcelFileDescriptor.AutoCloseOutputStream(descriptor).getChannel();
+        }
+        OutputStream outputStream = contentResolver.openOutputStream(uri);
+        if (outputStream == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return Channels.newChannel(outputStream);
+    }
+
+    private static ReadableByteChannel openReadable(Uri uri, ContentResolver contentResolver) throws IOException {
+        ParcelFileDescriptor descriptor = openDescriptor(uri, "r", contentResolver);
+        if (descriptor != null) {
+            return new ParcelFileDescriptor.AutoCloseInputStream(descriptor).getChannel();
+        }
+        InputStream inputStream = contentResolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return Channels.newChannel(inputStream);
+    }
+
+    private static ParcelFileDescriptor openDescriptor(Uri uri, String mode, ContentResolver contentResolver) {
+        try {
+            return contentResolver.openFileDescriptor(uri, mode);
+        } catch (FileNotFoundException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -2,24 +2,41 @@ package com.github.zottaa.binarytree
 
 import android.app.AlertDialog
 import android.content.Intent
+import android.net.Uri
 import android.os.Bundle
+import android.os.SystemClock
 import android.view.View
 import android.widget.AdapterView
 import android.widget.ArrayAdapter
 import android.widget.Button
 import android.widget.EditText
+import android.widget.ProgressBar
 import android.widget.Spinner
 import android.widget.TextView
 import androidx.activity.ComponentActivity
 import androidx.activity.result.contract.ActivityResultContracts
-import com.github.zottaa.binarytree.BinaryTree.Base
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import com.github.zottaa.binarytree.BinaryTree.Balanced
+import java.io.IOException
+import java.util.ArrayDeque
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 
 class MainActivity : ComponentActivity() {
 
-    private var binaryTree = Base()
+    private var binaryTree: BinaryTree<UserType> = Balanced()
     private val userFactory = UserFactory()
     private var builder: UserType = userFactory.getBuilderByName(userFactory.typeNameList[0])
+    //Both belong to BinaryTreeApplication. Every journal call, as well as loading, import,
+    //export and balance, runs on the executor, one task at a time
+    private lateinit var journal: Journal
+    private lateinit var executor: ExecutorService
+    private var operation: Operation<*>? = null
+    private val pendingOperations = ArrayDeque<Operation<*>>()
 
     private lateinit var addValueField: EditText
     private lateinit var deleteValueField: EditText
@@ -33,8 +50,17 @@ class MainActivity : ComponentActivity() {
     private lateinit var showButton: Button
     private lateinit var traverseOrderButton: Button
     private lateinit var clearButton: Button
+    private lateinit var cancelButton: Button
     private lateinit var outputArea: TextView
+    private lateinit var itemList: RecyclerView
+    private lateinit var itemAdapter: TreeItemAdapter
+    private lateinit var structureScroll: View
+    private lateinit var structureArea: TextView
+    private var showStructure = false
     private lateinit var operationSpinner: Spinner
+    private lateinit var progressRow: View
+    private lateinit var progressBar: ProgressBar
+    private lateinit var progressText: TextView
 
 
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -52,8 +78,15 @@ class MainActivity : ComponentActivity() {
         showButton = findViewById(R.id.showButton)
         traverseOrderButton = findViewById(R.id.traverseOrderButton)
         clearButton = findViewById(R.id.clearButton)
+        cancelButton = findViewById(R.id.cancelButton)
         outputArea = findViewById(R.id.mainText)
+        itemList = findViewById(R.id.itemList)
+        structureScroll = findViewById(R.id.structureScroll)
+        structureArea = findViewById(R.id.structureText)
         operationSpinner = findViewById(R.id.typeSpinner)
+        progressRow = findViewById(R.id.progressRow)
+        progressBar = findViewById(R.id.progressBar)
+        progressText = findViewById(R.id.progressText)
 
         addButton.setOnClickListener { onAddButtonClicked() }
         deleteButton.setOnClickListener { onDeleteButtonClicked() }
@@ -64,11 +97,16 @@ class MainActivity : ComponentActivity() {
         showButton.setOnClickListener { onUpdateOutputClicked() }
         traverseOrderButton.setOnClickListener { onTraverseOrderButtonClicked() }
         clearButton.setOnClickListener { onClearButtonClicked() }
+        cancelButton.setOnClickListener { operation?.cancel() }
+
+        itemAdapter = TreeItemAdapter(binaryTree)
+        itemList.layoutManager = LinearLayoutManager(this)
+        itemList.adapter = itemAdapter
 
         val items = userFactory.typeNameList
         val adapter = ArrayAdapter(this, android.R.layout.simple_spinner_item, items)
         operationSpinner.adapter = adapter
-        operationSpinner.setSelection(0)
+        operationSpinner.setSelection(items.indexOf(builder.typeName()))
         operationSpinner.onItemSelectedListener = object : AdapterView.OnItemSelectedListener {
             override fun onItemSelected(
                 parent: AdapterView<*>?,
@@ -81,6 +119,8 @@ class MainActivity : ComponentActivity() {
                 addValueField.hint = "Enter value: example ${builder.create()}"
                 if (!oldValue.equals(builder.typeName(), ignoreCase = true)) {
                     binaryTree.clear()
+                    journaled { journal.logClear() }
+                    itemAdapter.notifyDataSetChanged()
                     updateOutput()
                 }
             }
@@ -89,30 +129,45 @@ class MainActivity : ComponentActivity() {
                 // Do nothing
             }
         }
+
+        val treeApplication = application as BinaryTreeApplication
+        journal = treeApplication.journal
+        executor = treeApplication.executor
+        //queued behind whatever a previous instance left on the executor, so after a rotation
+        //it sees every record and compaction that instance made.
+        //A torn load would leave the journal without its log, so it always runs to the end
+        Operation<Loaded>("Autosave", cancellable = false, work = {
+            Loaded(journal.load())
+        }, done = { showTree(it.tree) }).start()
+    }
+
+    override fun onDestroy() {
+        super.onDestroy()
+        pendingOperations.clear()
+        operation?.cancel()
     }
 
     private fun onClearButtonClicked() {
         binaryTree.clear()
+        journaled { journal.logClear() }
+        itemAdapter.notifyDataSetChanged()
         updateOutput()
     }
 
     private fun onTraverseOrderButtonClicked() {
-        val stringBuilder = StringBuilder()
-        binaryTree.forEach { v: UserType ->
-            stringBuilder.append(v.toString())
-            stringBuilder.append(" ")
-        }
-        outputArea.text = stringBuilder.toString()
+        showStructure = false
+        updateOutput()
     }
 
     private fun onUpdateOutputClicked() {
+        showStructure = true
         updateOutput()
     }
 
     private fun onDeserializeButtonClicked() {
         val intent = Intent(Intent.ACTION_OPEN_DOCUMENT)
         intent.addCategory(Intent.CATEGORY_OPENABLE)
-        intent.type = "text/plain"
+        intent.type = "*/*"
 
         fileOpenLauncher.launch(intent)
     }
@@ -120,50 +175,74 @@ class MainActivity : ComponentActivity() {
     private val fileOpenLauncher =
         registerForActivityResult(ActivityResultContracts.StartActivityForResult()) { result ->
             if (result.resultCode == RESULT_OK) {
-                result.data?.data?.let { uri ->
-                    val serialize = Serialize.Base()
-                    binaryTree = serialize.deserialize(
-                        uri,
-                        applicationContext.contentResolver
-                    ) as Base
-                    if (!binaryTree.isEmpty) {
-                        builder = userFactory.getBuilderByName(binaryTree.at(0).typeName())
-                        val index = userFactory.typeNameList.indexOf(builder.typeName())
-                        operationSpinner.setSelection(index)
-                    }
-                    updateOutput()
-                }
-
+                result.data?.data?.let { uri -> import(uri) }
             }
         }
 
+    //The file is parsed into a new tree, which replaces the current one only once it is complete
+    private fun import(uri: Uri) {
+        val contentResolver = applicationContext.contentResolver
+        val currentType = builder.typeName()
+        Operation<Loaded>("Import", work = { operation ->
+            val serialize = ContentResolverSerialize()
+            serialize.setProgressListener(operation)
+            val tree = serialize.deserializeParallel(uri, contentResolver)
+            operation.commit()
+            journal.compact(tree, if (tree.isEmpty) currentType else tree.at(0).typeName())
+            Loaded(tree, serialize.errorCount)
+        }, done = { loaded ->
+            showTree(loaded.tree)
+            if (loaded.errorCount > 0) {
+                showAlert("Malformed input", "Skipped ${loaded.errorCount} malformed items")
+            }
+        }).start()
+    }
+
     private val fileSaveLauncher =
         registerForActivityResult(ActivityResultContracts.StartActivityForResult()) { result ->
             if (result.resultCode == RESULT_OK) {
-                result.data?.data?.let { uri ->
-                    val serialize = Serialize.Base()
-                    serialize.serialize(
-                        binaryTree,
-                        uri,
-                        builder.typeName(),
-                        applicationContext.contentResolver
-                    )
-                }
+                result.data?.data?.let { uri -> export(uri) }
             }
         }
 
+    private fun export(uri: Uri) {
+        val contentResolver = applicationContext.contentResolver
+        val tree = binaryTree
+        val type = builder.typeName()
+        Operation<Unit>("Export", work = { operation ->
+            val serialize = ContentResolverSerialize()
+            serialize.setProgressListener(operation)
+            serialize.serializeCompressed(tree, uri, type, true, contentResolver)
+        }, done = {}).start()
+    }
+
     private fun onSerializeButtonClicked() {
         val intent = Intent(Intent.ACTION_CREATE_DOCUMENT)
         intent.addCategory(Intent.CATEGORY_OPENABLE)
-        intent.type = "text/plain"
-        intent.putExtra(Intent.EXTRA_TITLE, "example.txt")
+        intent.type = "application/octet-stream"
+        intent.putExtra(Intent.EXTRA_TITLE, "example.bin")
 
         fileSaveLauncher.launch(intent)
     }
 
+    //Builds a balanced copy, so cancelling leaves the current tree as it was.
+    //The order is the same, so the journal needs no record of it.
     private fun onBalanceButtonClicked() {
-        binaryTree.balance()
-        updateOutput()
+        val tree = binaryTree
+        Operation<Loaded>("Balance", work = { operation ->
+            val size = tree.size().toLong()
+            val items = ArrayList<UserType>(tree.size())
+            tree.forEach { v: UserType ->
+                items.add(v)
+                if (items.size % PROGRESS_INTERVAL == 0) {
+                    operation.onProgress(items.size.toLong(), size)
+                }
+            }
+            val balanced: BinaryTree<UserType> = Balanced()
+            balanced.bulkLoad(items)
+            operation.commit()
+            Loaded(balanced)
+        }, done = { showTree(it.tree) }).start()
     }
 
     private fun onAtButtonClicked() {
@@ -172,6 +251,9 @@ class MainActivity : ComponentActivity() {
                 val index = atValueField.text.toString().toInt()
                 val value = binaryTree.at(index).toString()
                 outputArea.text = value
+                showStructure = false
+                updateOutput()
+                itemList.scrollToPosition(index)
             } catch (e: IllegalArgumentException) {
                 showAlert("Invalid input", "Invalid input. Please enter a valid value.")
             }
@@ -182,7 +264,10 @@ class MainActivity : ComponentActivity() {
         if (deleteValueField.text.isNotEmpty()) {
             try {
                 val index = deleteValueField.text.toString().toInt()
-                binaryTree.delete(index)
+                if (binaryTree.delete(index)) {
+                    journaled { journal.logDelete(index) }
+                    itemAdapter.onDeleted(index)
+                }
                 updateOutput()
             } catch (e: IllegalArgumentException) {
                 showAlert("Invalid input", "Invalid input. Please enter a valid value.")
@@ -194,7 +279,12 @@ class MainActivity : ComponentActivity() {
         if (addValueField.text.isNotEmpty()) {
             try {
                 val value = builder.parseValue(addValueField.text.toString()) as UserType
-                binaryTree.add(value)
+                if (binaryTree.add(value)) {
+                    journaled { journal.logAdd(value) }
+                    val index = binaryTree.rank(value)
+                    itemAdapter.onAdded(index)
+                    itemList.scrollToPosition(index)
+                }
                 updateOutput()
             } catch (e: IllegalArgumentException) {
                 showAlert("Invalid input", "Invalid input. Please enter a valid value.")
@@ -202,8 +292,192 @@ class MainActivity : ComponentActivity() {
         }
     }
 
+    //The record is written on the executor, so the fsync behind it stays off the UI thread and
+    //records keep the order of the edits. Compaction is started back on the UI thread: it is
+    //queued behind every record written so far, and the controls stay disabled until it has run,
+    //so the snapshot it writes matches the log it replaces.
+    private fun journaled(action: () -> Unit) {
+        executor.execute {
+            try {
+                action()
+                if (journal.needsCompaction()) {
+                    runOnUiThread { compact() }
+                }
+            } catch (e: IOException) {
+                runOnUiThread {
+                    if (!isDestroyed) {
+                        showAlert("Autosave failed", e.message ?: e.toString())
+                    }
+                }
+            }
+        }
+    }
+
+    private fun compact() {
+        if (isDestroyed) {
+            return
+        }
+        val tree = binaryTree
+        val type = builder.typeName()
+        Operation<Unit>("Autosave", cancellable = false, work = {
+            //an earlier compaction may have run in the meantime
+            if (journal.needsCompaction()) {
+                journal.compact(tree, type)
+            }
+        }, done = {}).start()
+    }
+
+    //The list follows the tree through the adapter's notifications and the structure view shows
+    //only the top STRUCTURE_DEPTH levels, so an edit does not depend on the size of the tree
     private fun updateOutput() {
-        outputArea.text = binaryTree.toString()
+        itemList.visibility = if (showStructure) View.GONE else View.VISIBLE
+        structureScroll.visibility = if (showStructure) View.VISIBLE else View.GONE
+        if (showStructure) {
+            structureArea.text = binaryTree.toString(STRUCTURE_DEPTH)
+        }
+    }
+
+    private fun showTree(tree: BinaryTree<UserType>) {
+        binaryTree = tree
+        if (!binaryTree.isEmpty) {
+            builder = userFactory.getBuilderByName(binaryTree.at(0).typeName())
+            val index = userFactory.typeNameList.indexOf(builder.typeName())
+            operationSpinner.setSelection(index)
+        }
+        itemAdapter.tree = tree
+        updateOutput()
+    }
+
+    private fun setBusy(busy: Boolean) {
+        progressRow.visibility = if (busy) View.VISIBLE else View.GONE
+        for (control in listOf(
+            addButton, deleteButton, atButton, balanceButton, serializeButton,
+            deserializeButton, showButton, traverseOrderButton, clearButton, operationSpinner
+        )) {
+            control.isEnabled = !busy
+        }
+    }
+
+    private fun showProgress(title: String, done: Long, total: Long) {
+        progressBar.isIndeterminate = total <= 0
+        if (total > 0) {
+            progressBar.progress = (done * progressBar.max / total).toInt()
+            progressText.text = "$title ${done * 100 / total}%"
+        } else {
+            progressText.text = if (done > 0) "$title $done" else title
+        }
+    }
+
+    private class Loaded(
+        val tree: BinaryTree<UserType>,
+        val errorCount: Int = 0
+    )
+
+    //Runs work on the executor while the controls are disabled, so nothing else touches the tree,
+    //then hands the result to done on the UI thread. cancel() interrupts the worker, which makes
+    //Serialize and onProgress throw CancellationException. Work that must not be torn, like
+    //journal compaction, goes after commit(); from there on cancel() has no effect.
+    private inner class Operation<R>(
+        private val title: String,
+        private val cancellable: Boolean = true,
+        private val work: (Operation<R>) -> R,
+        private val done: (R) -> Unit
+    ) : ProgressListener {
+        private val state = AtomicInteger(RUNNING)
+        private val lastReport = AtomicLong()
+        private var worker: Thread? = null
+
+        fun start() {
+            setBusy(true)
+            if (operation == null) {
+                begin()
+            } else {
+                pendingOperations.add(this)
+            }
+        }
+
+        private fun begin() {
+            operation = this
+            cancelButton.isEnabled = cancellable
+            showProgress(title, 0, -1)
+            executor.execute { run() }
+        }
+
+        private fun run() {
+            synchronized(this) {
+                if (state.get() == CANCELLED) {
+                    runOnUiThread { finish() }
+                    return
+                }
+                worker = Thread.currentThread()
+            }
+            try {
+                if (!cancellable) {
+                    commit()
+                }
+                val result = work(this)
+                runOnUiThread {
+                    finish()
+                    if (state.get() != CANCELLED && !isDestroyed) {
+                        done(result)
+                    }
+                }
+            } catch (e: Exception) {
+                val cancelled = state.get() == CANCELLED
+                runOnUiThread {
+                    finish()
+                    if (!cancelled && !isDestroyed) {
+                        showAlert("$title failed", e.message ?: e.toString())
+                    }
+                }
+            } finally {
+                synchronized(this) {
+                    worker = null
+                }
+                //a cancel() that came too late must not reach the next operation
+                Thread.interrupted()
+            }
+        }
+
+        fun commit() {
+            if (!state.compareAndSet(RUNNING, COMMITTED)) {
+                throw CancellationException("Cancelled")
+            }
+        }
+
+        fun cancel() {
+            if (state.compareAndSet(RUNNING, CANCELLED)) {
+                synchronized(this) {
+                    worker?.interrupt()
+                }
+            }
+        }
+
+        //Called from the worker and from parallel parse tasks, posts at most every PROGRESS_PERIOD_MS
+        override fun onProgress(done: Long, total: Long) {
+            if (state.get() == CANCELLED) {
+                throw CancellationException("Cancelled")
+            }
+            val now = SystemClock.uptimeMillis()
+            val last = lastReport.get()
+            if (now - last >= PROGRESS_PERIOD_MS && lastReport.compareAndSet(last, now)) {
+                runOnUiThread {
+                    if (operation === this) {
+                        showProgress(title, done, total)
+                    }
+                }
+            }
+        }
+
+        private fun finish() {
+            operation = null
+            val next = pendingOperations.poll()
+            if (next != null) {
+                next.begin()
+            } else {
+                setBusy(false)
+            }
+        }
     }
 
     private fun showAlert(title: String, message: String) {
@@ -218,4 +492,13 @@ class MainActivity : ComponentActivity() {
         val alertDialog: AlertDialog = alertDialogBuilder.create()
         alertDialog.show()
     }
-}
\ No newline at end of file
+
+    companion object {
+        private const val RUNNING = 0
+        private const val CANCELLED = 1
+        private const val COMMITTED = 2
+        private const val STRUCTURE_DEPTH = 6
+        private const val PROGRESS_PERIOD_MS = 100L
+        private const val PROGRESS_INTERVAL = 4096
+    }
+}
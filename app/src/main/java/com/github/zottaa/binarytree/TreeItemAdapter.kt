@@ -0,0 +1,42 @@
+package com.github.zottaa.binarytree
+
+import android.view.LayoutInflater
+import android.view.ViewGroup
+import android.widget.TextView
+import androidx.recyclerview.widget.RecyclerView
+
+//Shows the tree in order, one row per item. Only rows on screen are bound, each through
+//at(position), so an edit costs a few O(log n) lookups however large the tree is.
+class TreeItemAdapter(tree: BinaryTree<UserType>) : RecyclerView.Adapter<TreeItemAdapter.Holder>() {
+
+    var tree: BinaryTree<UserType> = tree
+        set(value) {
+            field = value
+            notifyDataSetChanged()
+        }
+
+    class Holder(val text: TextView) : RecyclerView.ViewHolder(text)
+
+    override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): Holder {
+        val view = LayoutInflater.from(parent.context)
+            .inflate(R.layout.item_tree_row, parent, false) as TextView
+        return Holder(view)
+    }
+
+    override fun onBindViewHolder(holder: Holder, position: Int) {
+        holder.text.text = "$position: ${tree.at(position)}"
+    }
+
+    override fun getItemCount(): Int = tree.size()
+
+    //Rows after an insert or removal move by one, so their index labels are rebound as well
+    fun onAdded(index: Int) {
+        notifyItemInserted(index)
+        notifyItemRangeChanged(index + 1, itemCount - index - 1)
+    }
+
+    fun onDeleted(index: Int) {
+        notifyItemRemoved(index)
+        notifyItemRangeChanged(index, itemCount - index)
+    }
+}
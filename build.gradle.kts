@@ -2,4 +2,5 @@
 plugins {
     id("com.android.application") version "8.1.4" apply false
     id("org.jetbrains.kotlin.android") version "1.8.10" apply false
+    id("me.champeau.jmh") version "0.7.1" apply false
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+//./gradlew :core:jmh, narrow it down with -Pjmh.includes=TreeBenchmark.add or by editing includes below
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    jvmArgs.add("-Xmx6g")
+    if (project.hasProperty("jmh.includes")) {
+        includes.add(project.property("jmh.includes").toString())
+    }
+}
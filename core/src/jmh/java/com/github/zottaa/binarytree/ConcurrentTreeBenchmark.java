@@ -0,0 +1,82 @@
+package com.github.zottaa.binarytree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Contention benchmark: one writer keeps inserting while reader threads call at().
+//Compares BinaryTree.Concurrent with a single global lock around BinaryTree.Balanced,
+//which is how callers shared the tree before. Change the reader count with -tg 1,N
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class ConcurrentTreeBenchmark {
+    private static final int INITIAL_SIZE = 200_000;
+
+    @Param({"Concurrent", "GlobalLock"})
+    public String engine;
+
+    private BinaryTree<UserType> tree;
+
+    //the writer grows the tree, start every iteration from the same size
+    @Setup(Level.Iteration)
+    public void createTree() {
+        tree = engine.equals("GlobalLock") ? new GlobalLockTree() : new BinaryTree.Concurrent<UserType>();
+        List<UserType> items = new ArrayList<>(INITIAL_SIZE);
+        for (int i = 0; i < INITIAL_SIZE; i++) {
+            items.add(new Point(i, i));
+        }
+        tree.bulkLoad(items);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public boolean add() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return tree.add(new Point(random.nextInt(1 << 20), random.nextInt(1 << 20)));
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public UserType at() {
+        return tree.at(ThreadLocalRandom.current().nextInt(INITIAL_SIZE));
+    }
+
+    private static class GlobalLockTree extends BinaryTree.Balanced<UserType> {
+        @Override
+        public synchronized boolean add(UserType item) {
+            return super.add(item);
+        }
+
+        @Override
+        public synchronized UserType at(int index) {
+            return super.at(index);
+        }
+
+        @Override
+        public synchronized void bulkLoad(List<? extends UserType> items) {
+            super.bulkLoad(items);
+        }
+    }
+}
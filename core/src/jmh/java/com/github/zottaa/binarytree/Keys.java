@@ -0,0 +1,57 @@
+package com.github.zottaa.binarytree;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+//Benchmark inputs: count items of the given type in the order the distribution asks for
+final class Keys {
+    enum Distribution {
+        RANDOM,
+        SORTED,
+        REVERSED,
+        //every item is one of count / 4 distinct values
+        DUPLICATES
+    }
+
+    private Keys() {
+    }
+
+    static UserType[] generate(String type, Distribution distribution, int count, long seed) {
+        Random random = new Random(seed);
+        UserType builder = new UserFactory().getBuilderByName(type);
+        int[] fields = new int[3];
+        int distinct = distribution == Distribution.DUPLICATES ? Math.max(1, count / 4) : count;
+
+        UserType[] values = new UserType[distinct];
+        for (int i = 0; i < distinct; i++) {
+            int fieldCount;
+            if (type.equals("Point")) {
+                fields[0] = random.nextInt(1 << 20);
+                fields[1] = random.nextInt(1 << 20);
+                fieldCount = 2;
+            } else {
+                fields[0] = random.nextInt(1 << 10);
+                fields[1] = random.nextInt(1 << 16);
+                fields[2] = random.nextInt(1 << 16) + 1;
+                fieldCount = 3;
+            }
+            values[i] = builder.fromFields(fields, fieldCount);
+        }
+        if (distribution == Distribution.DUPLICATES) {
+            UserType[] items = new UserType[count];
+            for (int i = 0; i < count; i++) {
+                items[i] = values[random.nextInt(distinct)];
+            }
+            return items;
+        }
+
+        Comparator<UserType> comparator = builder.getTypeComparator();
+        if (distribution == Distribution.SORTED) {
+            Arrays.sort(values, comparator);
+        } else if (distribution == Distribution.REVERSED) {
+            Arrays.sort(values, comparator.reversed());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.zottaa.binarytree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.concurrent.TimeUnit;
+
+//Serialize round trips through in-memory channels, so the scores exclude disk access.
+//Scores are whole trees per second; the gc profiler reports allocation per tree.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializeBenchmark {
+    public enum Format {
+        TEXT,
+        BINARY,
+        COMPRESSED
+    }
+
+    @Param({"Point", "Fraction"})
+    public String type;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"RANDOM", "SORTED", "REVERSED", "DUPLICATES"})
+    public Keys.Distribution distribution;
+
+    @Param({"TEXT", "BINARY", "COMPRESSED"})
+    public Format format;
+
+    private final Serialize serializer = new Serialize.Base();
+    private BinaryTree<UserType> tree;
+    private ByteArrayOutputStream output;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void createContent() throws IOException {
+        //added in distribution order, which decides the shape and so the order the text format
+        //is written in by forEachFromRoot; bulkLoad would sort the keys first
+        tree = new BinaryTree.Balanced<>();
+        for (UserType key : Keys.generate(type, distribution, size, 1)) {
+            tree.add(key);
+        }
+        output = new ByteArrayOutputStream();
+        write();
+        content = output.toByteArray();
+    }
+
+    private void write() throws IOException {
+        output.reset();
+        switch (format) {
+            case TEXT:
+                serializer.serialize(tree, type, Channels.newChannel(output));
+                break;
+            case BINARY:
+                serializer.serializeBinary(tree, type, Channels.newChannel(output));
+                break;
+            case COMPRESSED:
+                serializer.serializeCompressed(tree, type, true, Channels.newChannel(output));
+                break;
+        }
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        write();
+        return output.size();
+    }
+
+    @Benchmark
+    public BinaryTree<UserType> deserialize() throws IOException {
+        return serializer.deserialize(Channels.newChannel(new ByteArrayInputStream(content)));
+    }
+
+    @Benchmark
+    public BinaryTree<UserType> deserializeParallel() throws IOException {
+        return serializer.deserializeParallel(Channels.newChannel(new ByteArrayInputStream(content)));
+    }
+}
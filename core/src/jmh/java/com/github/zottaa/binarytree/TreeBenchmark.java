@@ -0,0 +1,208 @@
+package com.github.zottaa.binarytree;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Single-threaded BinaryTree operations on a tree of size items, for every engine in TreeFactory.
+//The tree is built by add() in the order of the distribution, so each engine is measured on
+//the shape those inserts leave: Base degenerates into a list on SORTED and REVERSED keys.
+//That build is quadratic there, so those combinations stop at MAX_DEGENERATE_SIZE and
+//fail in setup above it, which JMH reports and moves on from; the other engines run to 1e7.
+//add and delete work on a batch of BATCH items and put the tree back afterwards,
+//so every invocation sees the same tree. Scores are operations per second, except for build,
+//which scores whole trees per second.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeBenchmark {
+    private static final int BATCH = 128;
+    private static final int MAX_DEGENERATE_SIZE = 100_000;
+
+    //@State only so JMH accepts the @Param fields here, the benchmarks take the subclasses
+    @State(Scope.Thread)
+    public abstract static class KeyState {
+        @Param({"Base", "Balanced", "BPlus", "Packed", "Persistent", "Concurrent"})
+        public String engine;
+
+        @Param({"Point", "Fraction"})
+        public String type;
+
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Param({"RANDOM", "SORTED", "REVERSED", "DUPLICATES"})
+        public Keys.Distribution distribution;
+
+        UserType[] keys;
+
+        void createKeys() {
+            if (engine.equals("Base") && size > MAX_DEGENERATE_SIZE
+                    && (distribution == Keys.Distribution.SORTED || distribution == Keys.Distribution.REVERSED)) {
+                throw new IllegalStateException("Skipped: Base builds a list from " + distribution + " keys");
+            }
+            keys = Keys.generate(type, distribution, size, 1);
+        }
+
+        BinaryTree<UserType> insertKeys() {
+            BinaryTree<UserType> tree = new TreeFactory().getTreeByName(engine);
+            for (UserType key : keys) {
+                tree.add(key);
+            }
+            return tree;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BuildState extends KeyState {
+        @Setup(Level.Trial)
+        public void createBuildKeys() {
+            createKeys();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class TreeState extends KeyState {
+        BinaryTree<UserType> tree;
+        UserType[] batch;
+        int[] indices;
+
+        @Setup(Level.Trial)
+        public void createTree() {
+            createKeys();
+            batch = Keys.generate(type, distribution, BATCH, 2);
+            tree = insertKeys();
+
+            Random random = new Random(3);
+            indices = new int[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                indices[i] = random.nextInt(tree.size());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class AddState extends TreeState {
+        final boolean[] added = new boolean[BATCH];
+
+        @TearDown(Level.Invocation)
+        public void removeAdded() {
+            for (int i = BATCH - 1; i >= 0; i--) {
+                if (added[i]) {
+                    tree.delete(tree.rank(batch[i]));
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteState extends TreeState {
+        final UserType[] deleted = new UserType[BATCH];
+
+        //The benchmark deletes at indices[i] % (size - i) from the shrinking tree,
+        //find the same items in the full tree so they can be put back
+        @Setup(Level.Invocation)
+        public void pickDeleted() {
+            int size = tree.size();
+            int[] removed = new int[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                int index = indices[i] % (size - i);
+                int position = 0;
+                while (position < i && removed[position] <= index) {
+                    index++;
+                    position++;
+                }
+                System.arraycopy(removed, position, removed, position + 1, i - position);
+                removed[position] = index;
+                deleted[i] = tree.at(index);
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void restoreDeleted() {
+            for (UserType item : deleted) {
+                tree.add(item);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ClearState extends TreeState {
+        @Setup(Level.Invocation)
+        public void refill() {
+            tree.bulkLoad(Arrays.asList(keys));
+        }
+    }
+
+    @Benchmark
+    public BinaryTree<UserType> build(BuildState state) {
+        return state.insertKeys();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void add(AddState state) {
+        BinaryTree<UserType> tree = state.tree;
+        UserType[] batch = state.batch;
+        for (int i = 0; i < BATCH; i++) {
+            state.added[i] = tree.add(batch[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void at(TreeState state, Blackhole blackhole) {
+        BinaryTree<UserType> tree = state.tree;
+        for (int index : state.indices) {
+            blackhole.consume(tree.at(index));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void delete(DeleteState state, Blackhole blackhole) {
+        BinaryTree<UserType> tree = state.tree;
+        int[] indices = state.indices;
+        for (int i = 0; i < BATCH; i++) {
+            blackhole.consume(tree.delete(indices[i] % tree.size()));
+        }
+    }
+
+    @Benchmark
+    public void forEach(TreeState state, final Blackhole blackhole) {
+        state.tree.forEach(new ElementProcessor<UserType>() {
+            @Override
+            public void toDo(UserType v) {
+                blackhole.consume(v);
+            }
+        });
+    }
+
+    @Benchmark
+    public void balance(TreeState state) {
+        state.tree.balance();
+    }
+
+    @Benchmark
+    public void clear(ClearState state) {
+        state.tree.clear();
+    }
+}
@@ -0,0 +1,648 @@
+package com.github.zottaa.binarytree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Order-statistic B+-tree: leaves hold up to CAPACITY sorted items and are linked left to right,
+//inner nodes hold up to CAPACITY children with the item count of every child next to the
+//child pointers, so at(index) and delete(index) read one small array per level.
+//Inner keys[i] is a lower bound of child i; keys[0] is the lower bound of the node itself.
+public class BPlusTree<T> implements BinaryTree<T> {
+    private static final int CAPACITY = 32;
+    private static final int MINIMUM = CAPACITY / 2;
+
+    private abstract static class Node {
+        int length;
+    }
+
+    private static final class Leaf extends Node {
+        final Object[] items = new Object[CAPACITY];
+        Leaf next;
+    }
+
+    private static final class Inner extends Node {
+        final Node[] children = new Node[CAPACITY];
+        final Object[] keys = new Object[CAPACITY];
+        final int[] counts = new int[CAPACITY];
+    }
+
+    private Node root;
+    private Leaf head;
+    private int size;
+    //set by insert() when the item was not a duplicate
+    private boolean inserted;
+
+    private final Comparator<? super T> ordering;
+    private Comparator<? super T> comparator;
+
+    public BPlusTree() {
+        this.ordering = null;
+        this.comparator = null;
+        reset();
+    }
+
+    public BPlusTree(Comparator<? super T> comparator) {
+        this.ordering = comparator;
+        this.comparator = comparator;
+        reset();
+    }
+
+    public BPlusTree(List<? extends T> items) {
+        this();
+        bulkLoad(items);
+    }
+
+    private void reset() {
+        this.head = new Leaf();
+        this.root = head;
+        this.size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(Leaf leaf, int position) {
+        return (T) leaf.items[position];
+    }
+
+    @SuppressWarnings("unchecked")
+    private T key(Inner inner, int position) {
+        return (T) inner.keys[position];
+    }
+
+    private static Object lowKey(Node node) {
+        return node instanceof Leaf ? ((Leaf) node).items[0] : ((Inner) node).keys[0];
+    }
+
+    private static int count(Node node) {
+        if (node instanceof Leaf) {
+            return node.length;
+        }
+        Inner inner = (Inner) node;
+        int count = 0;
+        for (int i = 0; i < inner.length; i++) {
+            count += inner.counts[i];
+        }
+        return count;
+    }
+
+    //Index of the child whose range contains item
+    private int route(Inner inner, T item) {
+        int low = 1;
+        int high = inner.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(key(inner, middle), item) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low - 1;
+    }
+
+    //Position of item in the leaf, or -(insertion point) - 1 like Arrays.binarySearch
+    private int search(Leaf leaf, T item) {
+        int low = 0;
+        int high = leaf.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparisonResult = comparator.compare(item(leaf, middle), item);
+            if (comparisonResult < 0) {
+                low = middle + 1;
+            } else if (comparisonResult > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public boolean add(T item) {
+        if (size == 0) {
+            comparator = ordering != null ? ordering : TreeComparators.forItem(item);
+        }
+        inserted = false;
+        Node sibling = insert(root, item);
+        if (sibling != null) {
+            Inner parent = new Inner();
+            parent.children[0] = root;
+            parent.keys[0] = lowKey(root);
+            parent.counts[0] = count(root);
+            parent.children[1] = sibling;
+            parent.keys[1] = lowKey(sibling);
+            parent.counts[1] = count(sibling);
+            parent.length = 2;
+            root = parent;
+        }
+        if (inserted) {
+            size++;
+        }
+        return inserted;
+    }
+
+    //Returns the new right sibling when node had to split
+    private Node insert(Node node, T item) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            int position = search(leaf, item);
+            if (position >= 0) {
+                return null;
+            }
+            inserted = true;
+            position = -(position + 1);
+            if (leaf.length < CAPACITY) {
+                insertItem(leaf, position, item);
+                return null;
+            }
+            Leaf right = new Leaf();
+            int half = CAPACITY / 2;
+            System.arraycopy(leaf.items, half, right.items, 0, CAPACITY - half);
+            Arrays.fill(leaf.items, half, CAPACITY, null);
+            right.length = CAPACITY - half;
+            leaf.length = half;
+            right.next = leaf.next;
+            leaf.next = right;
+            if (position <= half) {
+                insertItem(leaf, position, item);
+            } else {
+                insertItem(right, position - half, item);
+            }
+            return right;
+        }
+
+        Inner inner = (Inner) node;
+        int child = route(inner, item);
+        Node sibling = insert(inner.children[child], item);
+        if (!inserted) {
+            return null;
+        }
+        if (sibling == null) {
+            inner.counts[child]++;
+            return null;
+        }
+        inner.counts[child] = count(inner.children[child]);
+        if (inner.length < CAPACITY) {
+            insertChild(inner, child + 1, sibling);
+            return null;
+        }
+        Inner right = new Inner();
+        int half = CAPACITY / 2;
+        System.arraycopy(inner.children, half, right.children, 0, CAPACITY - half);
+        System.arraycopy(inner.keys, half, right.keys, 0, CAPACITY - half);
+        System.arraycopy(inner.counts, half, right.counts, 0, CAPACITY - half);
+        Arrays.fill(inner.children, half, CAPACITY, null);
+        Arrays.fill(inner.keys, half, CAPACITY, null);
+        right.length = CAPACITY - half;
+        inner.length = half;
+        if (child + 1 <= half) {
+            insertChild(inner, child + 1, sibling);
+        } else {
+            insertChild(right, child + 1 - half, sibling);
+        }
+        return right;
+    }
+
+    private static void insertItem(Leaf leaf, int position, Object item) {
+        System.arraycopy(leaf.items, position, leaf.items, position + 1, leaf.length - position);
+        leaf.items[position] = item;
+        leaf.length++;
+    }
+
+    private static void insertChild(Inner inner, int position, Node child) {
+        int moved = inner.length - position;
+        System.arraycopy(inner.children, position, inner.children, position + 1, moved);
+        System.arraycopy(inner.keys, position, inner.keys, position + 1, moved);
+        System.arraycopy(inner.counts, position, inner.counts, position + 1, moved);
+        inner.children[position] = child;
+        inner.keys[position] = lowKey(child);
+        inner.counts[position] = count(child);
+        inner.length++;
+    }
+
+    @Override
+    public boolean delete(int index) {
+        if (index < 0 || index >= size) {
+            return false;
+        }
+        remove(root, index);
+        size--;
+        if (root instanceof Inner && root.length == 1) {
+            root = ((Inner) root).children[0];
+        }
+        return true;
+    }
+
+    private void remove(Node node, int index) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            System.arraycopy(leaf.items, index + 1, leaf.items, index, leaf.length - index - 1);
+            leaf.items[--leaf.length] = null;
+            return;
+        }
+        Inner inner = (Inner) node;
+        int child = 0;
+        while (index >= inner.counts[child]) {
+            index -= inner.counts[child];
+            child++;
+        }
+        remove(inner.children[child], index);
+        inner.counts[child]--;
+        if (inner.children[child].length < MINIMUM && inner.length > 1) {
+            rebalance(inner, child);
+        }
+    }
+
+    //Merges the underflowing child with a neighbour, or splits their contents evenly
+    private void rebalance(Inner parent, int child) {
+        int first = child + 1 < parent.length ? child : child - 1;
+        Node left = parent.children[first];
+        Node right = parent.children[first + 1];
+        int total = left.length + right.length;
+
+        if (left instanceof Leaf) {
+            Leaf leftLeaf = (Leaf) left;
+            Leaf rightLeaf = (Leaf) right;
+            Object[] items = new Object[total];
+            System.arraycopy(leftLeaf.items, 0, items, 0, leftLeaf.length);
+            System.arraycopy(rightLeaf.items, 0, items, leftLeaf.length, rightLeaf.length);
+            if (total <= CAPACITY) {
+                System.arraycopy(items, 0, leftLeaf.items, 0, total);
+                leftLeaf.length = total;
+                leftLeaf.next = rightLeaf.next;
+                removeChild(parent, first + 1);
+                parent.counts[first] = total;
+                return;
+            }
+            int half = total / 2;
+            Arrays.fill(leftLeaf.items, null);
+            Arrays.fill(rightLeaf.items, null);
+            System.arraycopy(items, 0, leftLeaf.items, 0, half);
+            System.arraycopy(items, half, rightLeaf.items, 0, total - half);
+            leftLeaf.length = half;
+            rightLeaf.length = total - half;
+        } else {
+            Inner leftInner = (Inner) left;
+            Inner rightInner = (Inner) right;
+            rightInner.keys[0] = parent.keys[first + 1];
+            Node[] children = new Node[total];
+            Object[] keys = new Object[total];
+            int[] counts = new int[total];
+            System.arraycopy(leftInner.children, 0, children, 0, leftInner.length);
+            System.arraycopy(rightInner.children, 0, children, leftInner.length, rightInner.length);
+            System.arraycopy(leftInner.keys, 0, keys, 0, leftInner.length);
+            System.arraycopy(rightInner.keys, 0, keys, leftInner.length, rightInner.length);
+            System.arraycopy(leftInner.counts, 0, counts, 0, leftInner.length);
+            System.arraycopy(rightInner.counts, 0, counts, leftInner.length, rightInner.length);
+            if (total <= CAPACITY) {
+                System.arraycopy(children, 0, leftInner.children, 0, total);
+                System.arraycopy(keys, 0, leftInner.keys, 0, total);
+                System.arraycopy(counts, 0, leftInner.counts, 0, total);
+                leftInner.length = total;
+                removeChild(parent, first + 1);
+                parent.counts[first] = count(leftInner);
+                return;
+            }
+            int half = total / 2;
+            Arrays.fill(leftInner.children, null);
+            Arrays.fill(leftInner.keys, null);
+            Arrays.fill(rightInner.children, null);
+            Arrays.fill(rightInner.keys, null);
+            System.arraycopy(children, 0, leftInner.children, 0, half);
+            System.arraycopy(keys, 0, leftInner.keys, 0, half);
+            System.arraycopy(counts, 0, leftInner.counts, 0, half);
+            System.arraycopy(children, half, rightInner.children, 0, total - half);
+            System.arraycopy(keys, half, rightInner.keys, 0, total - half);
+            System.arraycopy(counts, half, rightInner.counts, 0, total - half);
+            leftInner.length = half;
+            rightInner.length = total - half;
+        }
+        parent.keys[first + 1] = lowKey(right);
+        parent.counts[first] = count(left);
+        parent.counts[first + 1] = count(right);
+    }
+
+    private static void removeChild(Inner inner, int position) {
+        int moved = inner.length - position - 1;
+        System.arraycopy(inner.children, position + 1, inner.children, position, moved);
+        System.arraycopy(inner.keys, position + 1, inner.keys, position, moved);
+        System.arraycopy(inner.counts, position + 1, inner.counts, position, moved);
+        inner.length--;
+        inner.children[inner.length] = null;
+        inner.keys[inner.length] = null;
+    }
+
+    @Override
+    public T at(int index) {
+        if (index < 0 || index >= size) {
+            return null;
+        }
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = 0;
+            while (index >= inner.counts[child]) {
+                index -= inner.counts[child];
+                child++;
+            }
+            node = inner.children[child];
+        }
+        return item((Leaf) node, index);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void balance() {
+        @SuppressWarnings("unchecked")
+        T[] items = (T[]) new Object[size];
+        int count = 0;
+        for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+            System.arraycopy(leaf.items, 0, items, count, leaf.length);
+            count += leaf.length;
+        }
+        build(items, count);
+    }
+
+    @Override
+    public void forEach(ElementProcessor<? super T> processor) {
+        for (Leaf leaf = head; leaf != null; leaf = leaf.next) {
+            for (int i = 0; i < leaf.length; i++) {
+                processor.toDo(item(leaf, i));
+            }
+        }
+    }
+
+    //Items live only in the leaves, so this is the same leaf-by-leaf order as forEach
+    @Override
+    public void forEachFromRoot(ElementProcessor<? super T> processor) {
+        forEach(processor);
+    }
+
+    @Override
+    public void clear() {
+        reset();
+    }
+
+    @Override
+    public void bulkLoad(List<? extends T> items) {
+        if (items.isEmpty()) {
+            reset();
+            return;
+        }
+        Comparator<? super T> comparator = ordering != null ? ordering : TreeComparators.forItem(items.get(0));
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) items.toArray();
+        Arrays.sort(sorted, comparator);
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (comparator.compare(sorted[count - 1], sorted[i]) != 0) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        this.comparator = comparator;
+        build(sorted, count);
+    }
+
+    private TreeBatches.Loader<T> loader() {
+        return new TreeBatches.Loader<T>() {
+            @Override
+            public void load(T[] sorted, int count) {
+                build(sorted, count);
+            }
+        };
+    }
+
+    //Packs sorted items into full leaves and inner nodes, spreading the remainder evenly
+    private void build(T[] sorted, int count) {
+        reset();
+        if (count == 0) {
+            return;
+        }
+        int leaves = (count + CAPACITY - 1) / CAPACITY;
+        Node[] level = new Node[leaves];
+        Leaf previous = null;
+        int from = 0;
+        for (int i = 0; i < leaves; i++) {
+            int to = (int) ((long) count * (i + 1) / leaves);
+            Leaf leaf = new Leaf();
+            System.arraycopy(sorted, from, leaf.items, 0, to - from);
+            leaf.length = to - from;
+            if (previous == null) {
+                head = leaf;
+            } else {
+                previous.next = leaf;
+            }
+            previous = leaf;
+            level[i] = leaf;
+            from = to;
+        }
+
+        while (level.length > 1) {
+            int parents = (level.length + CAPACITY - 1) / CAPACITY;
+            Node[] upper = new Node[parents];
+            from = 0;
+            for (int i = 0; i < parents; i++) {
+                int to = (int) ((long) level.length * (i + 1) / parents);
+                Inner inner = new Inner();
+                for (int j = from; j < to; j++) {
+                    inner.children[j - from] = level[j];
+                    inner.keys[j - from] = lowKey(level[j]);
+                    inner.counts[j - from] = count(level[j]);
+                }
+                inner.length = to - from;
+                upper[i] = inner;
+                from = to;
+            }
+            level = upper;
+        }
+        root = level[0];
+        size = count;
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> items) {
+        return TreeBatches.addAll(this, items, comparator, loader());
+    }
+
+    @Override
+    public int deleteAll(int[] indices) {
+        return TreeBatches.deleteAll(this, indices, loader());
+    }
+
+    @Override
+    public int deleteRange(int fromIndex, int toIndex) {
+        return TreeBatches.deleteRange(this, fromIndex, toIndex, loader());
+    }
+
+    @Override
+    public int rank(T item) {
+        return rank(item, false);
+    }
+
+    @Override
+    public int countInRange(T from, T to) {
+        if (size == 0 || comparator.compare(from, to) > 0) {
+            return 0;
+        }
+        return rank(to, true) - rank(from, false);
+    }
+
+    private int rank(T item, boolean inclusive) {
+        if (size == 0) {
+            return 0;
+        }
+        int rank = 0;
+        Node node = root;
+        while (node instanceof Inner) {
+            Inner inner = (Inner) node;
+            int child = route(inner, item);
+            for (int i = 0; i < child; i++) {
+                rank += inner.counts[i];
+            }
+            node = inner.children[child];
+        }
+        Leaf leaf = (Leaf) node;
+        int position = search(leaf, item);
+        if (position >= 0) {
+            return rank + position + (inclusive ? 1 : 0);
+        }
+        return rank - (position + 1);
+    }
+
+    @Override
+    public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor) {
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, size);
+        Iterator<T> iterator = iterator(fromIndex);
+        for (int remaining = toIndex - fromIndex; remaining > 0; remaining--) {
+            processor.toDo(iterator.next());
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(0);
+    }
+
+    @Override
+    public Iterator<T> iterator(int fromIndex) {
+        Leaf start = null;
+        int position = 0;
+        if (fromIndex >= 0 && fromIndex < size) {
+            Node node = root;
+            int index = fromIndex;
+            while (node instanceof Inner) {
+                Inner inner = (Inner) node;
+                int child = 0;
+                while (index >= inner.counts[child]) {
+                    index -= inner.counts[child];
+                    child++;
+                }
+                node = inner.children[child];
+            }
+            start = (Leaf) node;
+            position = index;
+        }
+        final Leaf first = start;
+        final int firstPosition = position;
+        return new Iterator<T>() {
+            private Leaf leaf = first;
+            private int position = firstPosition;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && position >= leaf.length) {
+                    leaf = leaf.next;
+                    position = 0;
+                }
+                return leaf != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return item(leaf, position++);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator<>(this, 0, size, comparator);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public String toString() {
+        return toString(Integer.MAX_VALUE);
+    }
+
+    //Inner nodes print nothing themselves, so one cut off at maxDepth prints its item count
+    @Override
+    public String toString(int maxDepth) {
+        StringBuilder treeString = new StringBuilder();
+        ArrayDeque<Node> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> levels = new ArrayDeque<>();
+        if (maxDepth > 0) {
+            nodes.push(root);
+            levels.push(0);
+        }
+        while (!nodes.isEmpty()) {
+            Node node = nodes.pop();
+            int level = levels.pop();
+            if (node instanceof Inner) {
+                Inner inner = (Inner) node;
+                if (level + 1 < maxDepth) {
+                    for (int i = 0; i < inner.length; i++) {
+                        nodes.push(inner.children[i]);
+                        levels.push(level + 1);
+                    }
+                    continue;
+                }
+                int count = 0;
+                for (int i = 0; i < inner.length; i++) {
+                    count += inner.counts[i];
+                }
+                for (int i = 0; i < level; i++) {
+                    treeString.append("         ");
+                }
+                treeString.append("(+").append(count).append(")\n");
+                continue;
+            }
+            Leaf leaf = (Leaf) node;
+            if (leaf.length == 0) {
+                continue;
+            }
+            for (int i = 0; i < level; i++) {
+                treeString.append("         ");
+            }
+            for (int i = leaf.length - 1; i >= 0; i--) {
+                treeString.append(leaf.items[i]).append(i > 0 ? " " : "\n");
+            }
+        }
+        return treeString.toString();
+    }
+}
@@ -0,0 +1,1217 @@
+package com.github.zottaa.binarytree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public interface BinaryTree<T> {
+    public boolean add(T item);
+
+    public boolean delete(int index);
+
+    public T at(int index);
+
+    public boolean isEmpty();
+
+    public int size();
+
+    public void balance();
+
+    public void forEach(ElementProcessor<? super T> processor);
+
+    public void forEachFromRoot(ElementProcessor<? super T> processor);
+
+    public void clear();
+
+    public void bulkLoad(List<? extends T> items);
+
+    //Each returns how many items were added or deleted, see TreeBatches
+    public int addAll(Collection<? extends T> items);
+
+    public int deleteAll(int[] indices);
+
+    public int deleteRange(int fromIndex, int toIndex);
+
+    public int rank(T item);
+
+    public int countInRange(T from, T to);
+
+    public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor);
+
+    public Iterator<T> iterator();
+
+    public Iterator<T> iterator(int fromIndex);
+
+    public Spliterator<T> spliterator();
+
+    public Stream<T> stream();
+
+    //The top maxDepth levels of toString(), each cut-off subtree shown by its item count as (+n)
+    public String toString(int maxDepth);
+
+    abstract class Abstract<T> implements BinaryTree<T> {
+        Abstract() {
+            this.root = null;
+            this.size = 0;
+            this.ordering = null;
+            this.comparator = null;
+        }
+
+        Abstract(Comparator<? super T> ordering) {
+            this.root = null;
+            this.size = 0;
+            this.ordering = ordering;
+            this.comparator = ordering;
+        }
+
+        Abstract(Node<T> root) {
+            this.root = root;
+            this.size = 1;
+            this.ordering = null;
+            this.comparator = TreeComparators.forItem(root.item);
+            resetShape();
+        }
+
+        public static class Node<T> {
+            public Node<T> left;
+            public Node<T> right;
+            public T item;
+            public int weight;
+
+            Node() {
+                this.item = null;
+                this.left = null;
+                this.right = null;
+                this.weight = 0;
+            }
+
+            Node(T item) {
+                this.item = item;
+                this.left = null;
+                this.right = null;
+                this.weight = 1;
+            }
+
+            Node(T item, Node<T> left, Node<T> right) {
+                this.item = item;
+                this.left = left;
+                this.right = right;
+                this.weight = left.weight + right.weight + 1;
+            }
+        }
+
+        protected Node<T> root;
+        private int size;
+        //nodes detached by clear(true), linked through right
+        private Node<T> pool;
+
+        //fixed by the constructor, or null to take the comparator of the first item added
+        private final Comparator<? super T> ordering;
+        protected Comparator<? super T> comparator;
+
+        //null unless enabled, every hot path checks it once per operation
+        private TreeMetrics metrics;
+
+        public void setMetrics(TreeMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        public TreeMetrics getMetrics() {
+            return metrics;
+        }
+
+        //Shape statistics, kept up to date by every operation.
+        //Sum of the depths of all nodes (root at depth 0), exact
+        private long totalPathLength;
+        //Levels of the tree: exact after bulkLoad, balance and clear, and the highest level
+        //any add reached since then, so an upper bound once deletes or subtree rebuilds ran
+        private int height;
+        //largest size since the last full rebuild, for RebalancePolicy.isTooSparse
+        private int maxSize;
+        //null to leave the shape alone
+        private RebalancePolicy rebalancePolicy;
+
+        //Nodes whose weight the last add or delete changed, root first, each the parent of the next,
+        //so a rebalance checks them without another descent. Filled only when recordsPath()
+        protected Node<T>[] touchedPath;
+        protected int touchedDepth;
+
+        protected boolean recordsPath() {
+            return rebalancePolicy != null && rebalancePolicy.rebuildsSubtree();
+        }
+
+        private void touch(int depth, Node<T> node) {
+            if (touchedPath == null) {
+                @SuppressWarnings("unchecked")
+                Node<T>[] path = (Node<T>[]) new Node<?>[32];
+                touchedPath = path;
+            } else if (depth == touchedPath.length) {
+                touchedPath = Arrays.copyOf(touchedPath, depth * 2);
+            }
+            touchedPath[depth] = node;
+        }
+
+        public long getTotalPathLength() {
+            return totalPathLength;
+        }
+
+        public double getAverageDepth() {
+            return size == 0 ? 0 : (double) totalPathLength / size;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public void setRebalancePolicy(RebalancePolicy rebalancePolicy) {
+            this.rebalancePolicy = rebalancePolicy;
+            this.maxSize = size;
+        }
+
+        public RebalancePolicy getRebalancePolicy() {
+            return rebalancePolicy;
+        }
+
+        //Shape of a tree with every level full except the last, as build and balance leave it
+        private void resetShape() {
+            height = 32 - Integer.numberOfLeadingZeros(size);
+            totalPathLength = minimalPathLength(size);
+            maxSize = size;
+        }
+
+        //Sum of floor(log2 i) for i in 1..count
+        private static long minimalPathLength(int count) {
+            if (count == 0) {
+                return 0;
+            }
+            int levels = 31 - Integer.numberOfLeadingZeros(count);
+            return (long) (count + 1) * levels - (2L << levels) + 2;
+        }
+
+        //Sum of the depths below subtree, every node is weight - 1 times below an ancestor
+        private static <T> long internalPathLength(Node<T> subtree) {
+            long pathLength = 0;
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            stack.push(subtree);
+            while (!stack.isEmpty()) {
+                Node<T> current = stack.pop();
+                pathLength += current.weight - 1;
+                if (current.left != null)
+                    stack.push(current.left);
+                if (current.right != null)
+                    stack.push(current.right);
+            }
+            return pathLength;
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public boolean add(T item) {
+            touchedDepth = 0;
+            if (root == null) {
+                this.comparator = ordering != null ? ordering : TreeComparators.forItem(item);
+                this.root = obtainNode(item);
+                this.size++;
+                resetShape();
+                if (metrics != null) {
+                    metrics.onAdd(0, 0, true);
+                }
+                return true;
+            }
+            return add(root, item);
+        }
+
+        @Override
+        public void clear() {
+            clear(false);
+        }
+
+        public void clear(boolean recycleNodes) {
+            if (recycleNodes && root != null) {
+                Node<T> dummy = new Node<>();
+                dummy.right = root;
+                treeToVine(dummy);
+                Node<T> last = dummy.right;
+                last.item = null;
+                while (last.right != null) {
+                    last = last.right;
+                    last.item = null;
+                }
+                last.right = pool;
+                pool = dummy.right;
+            }
+            this.root = null;
+            this.size = 0;
+            resetShape();
+        }
+
+        private Node<T> obtainNode(T item) {
+            if (pool == null) {
+                return new Node<>(item);
+            }
+            Node<T> node = pool;
+            pool = node.right;
+            node.item = item;
+            node.right = null;
+            node.weight = 1;
+            return node;
+        }
+
+        @Override
+        public void bulkLoad(List<? extends T> items) {
+            if (items.isEmpty()) {
+                clear();
+                pool = null;
+                return;
+            }
+            Comparator<? super T> comparator = ordering != null ? ordering : TreeComparators.forItem(items.get(0));
+            @SuppressWarnings("unchecked")
+            T[] sorted = (T[]) items.toArray();
+            //stable sort keeps the first of equal items in input order, matching add()
+            Arrays.sort(sorted, comparator);
+            int count = 1;
+            for (int i = 1; i < sorted.length; i++) {
+                if (comparator.compare(sorted[count - 1], sorted[i]) != 0) {
+                    sorted[count++] = sorted[i];
+                }
+            }
+            this.comparator = comparator;
+            load(sorted, count);
+        }
+
+        //For readers whose items arrive sorted and distinct: skips bulkLoad's copy, sort and dedupe
+        void loadSorted(T[] sorted, int count) {
+            if (count > 0) {
+                this.comparator = ordering != null ? ordering : TreeComparators.forItem(sorted[0]);
+            }
+            load(sorted, count);
+        }
+
+        //Reuses the nodes of the current contents
+        private void load(T[] sorted, int count) {
+            clear(true);
+            this.root = build(sorted, 0, count);
+            this.size = count;
+            resetShape();
+            pool = null;
+        }
+
+        private TreeBatches.Loader<T> loader() {
+            return new TreeBatches.Loader<T>() {
+                @Override
+                public void load(T[] sorted, int count) {
+                    Abstract.this.load(sorted, count);
+                }
+            };
+        }
+
+        private Node<T> build(T[] sorted, int from, int to) {
+            if (from >= to) {
+                return null;
+            }
+            int middle = (from + to) >>> 1;
+            Node<T> node = obtainNode(sorted[middle]);
+            node.left = build(sorted, from, middle);
+            node.right = build(sorted, middle + 1, to);
+            node.weight = to - from;
+            return node;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        private boolean add(Node<T> current, T item) {
+            boolean record = recordsPath();
+            int pathLength = 0;
+            while (true) {
+                int comparisonResult = comparator.compare(current.item, item);
+                pathLength++;
+
+                if (comparisonResult == 0) {
+                    //restoreWeights walks the same path again
+                    restoreWeights(root, item);
+                    if (metrics != null) {
+                        metrics.onAdd(pathLength * 2, pathLength, false);
+                    }
+                    return false;
+                }
+                current.weight += 1;
+                if (record) {
+                    touch(pathLength - 1, current);
+                }
+
+                if (comparisonResult > 0) {
+                    if (current.left == null) {
+                        current.left = obtainNode(item);
+                        current = current.left;
+                        break;
+                    }
+                    current = current.left;
+                } else {
+                    if (current.right == null) {
+                        current.right = obtainNode(item);
+                        current = current.right;
+                        break;
+                    }
+                    current = current.right;
+                }
+            }
+            if (record) {
+                touch(pathLength, current);
+                touchedDepth = pathLength + 1;
+            }
+            size++;
+            //the new node is pathLength edges below the root
+            totalPathLength += pathLength;
+            height = Math.max(height, pathLength + 1);
+            maxSize = Math.max(maxSize, size);
+            if (metrics != null) {
+                metrics.onAdd(pathLength, pathLength, true);
+            }
+            if (rebalancePolicy != null && rebalancePolicy.isTooDeep(pathLength, size)) {
+                repairPath(pathLength);
+            }
+            return true;
+        }
+
+        //The new node is touchedPath[depth]
+        private void repairPath(int depth) {
+            if (!rebalancePolicy.rebuildsSubtree()) {
+                balance();
+                return;
+            }
+            Node<T>[] path = touchedPath;
+            for (int i = depth - 1; i >= 0; i--) {
+                if (rebalancePolicy.isScapegoat(path[i + 1].weight, path[i].weight)) {
+                    replace(i > 0 ? path[i - 1] : null, path[i], rebuild(path[i]));
+                    //the nodes above the rebuilt subtree are still the path to it
+                    touchedDepth = i;
+                    return;
+                }
+            }
+        }
+
+        protected void replace(Node<T> parent, Node<T> current, Node<T> replacement) {
+            if (parent == null) {
+                root = replacement;
+            } else if (parent.left == current) {
+                parent.left = replacement;
+            } else {
+                parent.right = replacement;
+            }
+        }
+
+        private void restoreWeights(Node<T> current, T item) {
+            while (current != null) {
+                int comparisonResult = comparator.compare(current.item, item);
+                if (comparisonResult == 0) {
+                    return;
+                }
+                current.weight -= 1;
+                current = comparisonResult > 0 ? current.left : current.right;
+            }
+        }
+
+        @Override
+        public boolean delete(int index) {
+            touchedDepth = 0;
+            if (this.root == null || index < 0 || index >= size)
+                return false;
+            delete(this.root, index, null);
+            if (rebalancePolicy != null && rebalancePolicy.isTooSparse(size, maxSize)) {
+                balance();
+            }
+            return true;
+        }
+
+        //Used only in delete, records the nodes above the minimum from depth on when depth >= 0
+        private Node<T> findMin(Node<T> current, Node<T> previous, Node<T> deletable, int depth) {
+            while (true) {
+                current.weight -= 1;
+                if (current.left == null) {
+                    if (previous != deletable)
+                        previous.left = current.right;
+                    if (depth >= 0) {
+                        touchedDepth = depth;
+                    }
+                    return current;
+                }
+                if (depth >= 0) {
+                    touch(depth++, current);
+                }
+                previous = current;
+                current = current.left;
+            }
+        }
+
+        private boolean delete(Node<T> current, int index, Node<T> previous) {
+            boolean record = recordsPath();
+            int pathLength = 1;
+            while (true) {
+                int currentIndex = current.left != null ? current.left.weight : 0;
+
+                current.weight -= 1;
+                if (record) {
+                    touch(pathLength - 1, current);
+                }
+                if (currentIndex < index) {
+                    index -= currentIndex + 1;
+                    previous = current;
+                    current = current.right;
+                } else if (currentIndex > index) {
+                    previous = current;
+                    current = current.left;
+                } else {
+                    break;
+                }
+                pathLength++;
+            }
+            if (metrics != null) {
+                metrics.onDelete(pathLength);
+            }
+            if (current.left == null || current.right == null) {
+                //the node at depth pathLength - 1 goes, its remaining subtree moves up a level
+                totalPathLength -= pathLength - 1 + current.weight;
+                Node<T> newNode = current.left == null ? current.right : current.left;
+                if (record) {
+                    //the path ends at the parent, the removed node is not kept
+                    touchedPath[pathLength - 1] = null;
+                    touchedDepth = pathLength - 1;
+                }
+                if (previous != null) {
+                    if (previous.left == current) {
+                        previous.left = newNode;
+                    } else {
+                        previous.right = newNode;
+                    }
+                } else {
+                    root = newNode;
+                }
+            } else {
+                //the successor takes the place of current, its right subtree moves up a level
+                int successorDepth = pathLength;
+                for (Node<T> next = current.right.left; next != null; next = next.left) {
+                    successorDepth++;
+                }
+                Node<T> temp = findMin(current.right, current, current, record ? pathLength : -1);
+                if (record) {
+                    touchedPath[pathLength - 1] = temp;
+                }
+                totalPathLength -= successorDepth + (temp.right != null ? temp.right.weight : 0);
+                temp.left = current.left;
+                if (current.right != temp)
+                    temp.right = current.right;
+                temp.weight = current.weight;
+                if (previous != null) {
+                    if (previous.left == current) {
+                        previous.left = temp;
+                    } else {
+                        previous.right = temp;
+                    }
+                } else {
+                    root = temp;
+                }
+            }
+            size--;
+            return true;
+        }
+
+        @Override
+        public T at(int index) {
+            if (index < 0 || index >= size || root == null) {
+                return null;
+            }
+            return at(this.root, index);
+        }
+
+        private T at(Node<T> current, int index) {
+            int pathLength = 1;
+            while (true) {
+                int currentIndex = current.left != null ? current.left.weight : 0;
+                if (currentIndex == index) {
+                    if (metrics != null) {
+                        metrics.onAt(pathLength);
+                    }
+                    return current.item;
+                }
+                pathLength++;
+
+                if (currentIndex < index) {
+                    index -= currentIndex + 1;
+                    current = current.right;
+                } else {
+                    current = current.left;
+                }
+            }
+        }
+
+        @Override
+        public int addAll(Collection<? extends T> items) {
+            return TreeBatches.addAll(this, items, comparator, loader());
+        }
+
+        @Override
+        public int deleteAll(int[] indices) {
+            return TreeBatches.deleteAll(this, indices, loader());
+        }
+
+        @Override
+        public int deleteRange(int fromIndex, int toIndex) {
+            return TreeBatches.deleteRange(this, fromIndex, toIndex, loader());
+        }
+
+        @Override
+        public int rank(T item) {
+            return rank(item, false);
+        }
+
+        @Override
+        public int countInRange(T from, T to) {
+            if (root == null || comparator.compare(from, to) > 0) {
+                return 0;
+            }
+            return rank(to, true) - rank(from, false);
+        }
+
+        //Number of elements less than item, or not greater than it when inclusive
+        private int rank(T item, boolean inclusive) {
+            int rank = 0;
+            int comparisons = 0;
+            Node<T> current = root;
+            while (current != null) {
+                int comparisonResult = comparator.compare(current.item, item);
+                comparisons++;
+                if (comparisonResult > 0 || (comparisonResult == 0 && !inclusive)) {
+                    current = current.left;
+                } else {
+                    rank += (current.left != null ? current.left.weight : 0) + 1;
+                    current = current.right;
+                }
+            }
+            if (metrics != null) {
+                metrics.onRank(comparisons);
+            }
+            return rank;
+        }
+
+        @Override
+        public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor) {
+            fromIndex = Math.max(fromIndex, 0);
+            toIndex = Math.min(toIndex, size);
+            if (fromIndex >= toIndex) {
+                return;
+            }
+
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            seek(stack, fromIndex);
+            for (int remaining = toIndex - fromIndex; remaining > 0; remaining--) {
+                Node<T> node = stack.pop();
+                processor.toDo(node.item);
+                for (Node<T> next = node.right; next != null; next = next.left) {
+                    stack.push(next);
+                }
+            }
+        }
+
+        //Leaves on the stack the path of nodes still to be visited in order from index
+        private void seek(ArrayDeque<Node<T>> stack, int index) {
+            Node<T> current = root;
+            while (current != null) {
+                int currentIndex = current.left != null ? current.left.weight : 0;
+                if (currentIndex < index) {
+                    index -= currentIndex + 1;
+                    current = current.right;
+                } else {
+                    stack.push(current);
+                    if (currentIndex == index) {
+                        return;
+                    }
+                    current = current.left;
+                }
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return iterator(0);
+        }
+
+        @Override
+        public Iterator<T> iterator(int fromIndex) {
+            final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            if (fromIndex >= 0 && fromIndex < size) {
+                seek(stack, fromIndex);
+            }
+            return new Iterator<T>() {
+                @Override
+                public boolean hasNext() {
+                    return !stack.isEmpty();
+                }
+
+                @Override
+                public T next() {
+                    if (stack.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    Node<T> node = stack.pop();
+                    for (Node<T> next = node.right; next != null; next = next.left) {
+                        stack.push(next);
+                    }
+                    return node.item;
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            return new TreeSpliterator<>(this, 0, size, comparator);
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        @Override
+        public void balance() {
+            touchedDepth = 0;
+            long start = metrics != null ? System.nanoTime() : 0;
+            Node<T> dummy = new Node<>();
+            dummy.right = this.root;
+            treeToVine(dummy);
+            vineToTree(dummy, size);
+            this.root = dummy.right;
+            recalculateWeights();
+            resetShape();
+            if (metrics != null) {
+                metrics.onRebuild(size, System.nanoTime() - start);
+            }
+        }
+
+        private void treeToVine(Node<T> root) {
+            Node<T> tail = root;
+            Node<T> rest = tail.right;
+            while (rest != null) {
+                if (rest.left == null) {
+                    tail = rest;
+                    rest = rest.right;
+                } else {
+                    Node<T> temp = rest.left;
+                    rest.left = temp.right;
+                    temp.right = rest;
+                    rest = temp;
+                    tail.right = temp;
+                }
+            }
+        }
+
+        protected Node<T> rebuild(Node<T> subtree) {
+            if (subtree == null) {
+                return null;
+            }
+            long start = metrics != null ? System.nanoTime() : 0;
+            Node<T> dummy = new Node<>();
+            dummy.right = subtree;
+            int count = subtree.weight;
+            totalPathLength += minimalPathLength(count) - internalPathLength(subtree);
+            treeToVine(dummy);
+            vineToTree(dummy, count);
+            recalculateWeights(dummy.right);
+            if (metrics != null) {
+                metrics.onRebuild(count, System.nanoTime() - start);
+            }
+            return dummy.right;
+        }
+
+        private void vineToTree(Node<T> root, int size) {
+            int leaves = size + 1 - Integer.highestOneBit(size + 1);
+            compress(root, leaves);
+            size = size - leaves;
+            while (size > 1) {
+                compress(root, (int) size / 2);
+                size = (int) size / 2;
+            }
+        }
+
+        private void compress(Node<T> root, int count) {
+            Node<T> scanner = root;
+            for (int i = 0; i < count; i++) {
+                Node<T> child = scanner.right;
+                scanner.right = child.right;
+                scanner = scanner.right;
+                child.right = scanner.left;
+                scanner.left = child;
+            }
+        }
+
+        private void recalculateWeights() {
+            recalculateWeights(root);
+        }
+
+        private int recalculateWeights(Node<T> node) {
+            if (node == null) {
+                return 0;
+            }
+
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            Node<T> current = node;
+            Node<T> lastVisited = null;
+            while (current != null || !stack.isEmpty()) {
+                if (current != null) {
+                    stack.push(current);
+                    current = current.left;
+                    continue;
+                }
+                Node<T> top = stack.peek();
+                if (top.right != null && top.right != lastVisited) {
+                    current = top.right;
+                } else {
+                    int leftWeight = top.left != null ? top.left.weight : 0;
+                    int rightWeight = top.right != null ? top.right.weight : 0;
+                    top.weight = leftWeight + rightWeight + 1;
+                    lastVisited = stack.pop();
+                }
+            }
+
+            return node.weight;
+        }
+
+        @Override
+        public void forEach(ElementProcessor<? super T> processor) {
+            inOrderTraversal(root, processor);
+        }
+
+        private void inOrderTraversal(Node<T> node, ElementProcessor<? super T> processor) {
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            Node<T> current = node;
+            while (current != null || !stack.isEmpty()) {
+                while (current != null) {
+                    stack.push(current);
+                    current = current.left;
+                }
+                current = stack.pop();
+                processor.toDo(current.item);
+                current = current.right;
+            }
+        }
+
+        @Override
+        public void forEachFromRoot(ElementProcessor<? super T> processor) {
+            fromRootOrder(this.root, processor);
+        }
+
+        private void fromRootOrder(Node<T> node, ElementProcessor<? super T> processor) {
+            if (node == null) {
+                return;
+            }
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            stack.push(node);
+            while (!stack.isEmpty()) {
+                Node<T> current = stack.pop();
+                processor.toDo(current.item);
+                if (current.right != null)
+                    stack.push(current.right);
+                if (current.left != null)
+                    stack.push(current.left);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return toString(Integer.MAX_VALUE);
+        }
+
+        @Override
+        public String toString(int maxDepth) {
+            StringBuilder treeString = new StringBuilder();
+            buildTreeString(root, 0, maxDepth, treeString);
+            return treeString.toString();
+        }
+
+        private void buildTreeString(Node<T> node, int level, int maxDepth, StringBuilder treeString) {
+            ArrayDeque<Node<T>> nodes = new ArrayDeque<>();
+            ArrayDeque<Integer> levels = new ArrayDeque<>();
+            Node<T> current = level < maxDepth ? node : null;
+            while (current != null || !nodes.isEmpty()) {
+                while (current != null) {
+                    nodes.push(current);
+                    levels.push(level);
+                    current = level + 1 < maxDepth ? current.right : null;
+                    level++;
+                }
+                current = nodes.pop();
+                level = levels.pop();
+                for (int i = 0; i < level; i++) {
+                    treeString.append("         ");
+                }
+                treeString.append(current.item);
+                if (level + 1 == maxDepth && current.weight > 1) {
+                    treeString.append(" (+").append(current.weight - 1).append(")");
+                }
+                treeString.append("\n");
+                current = level + 1 < maxDepth ? current.left : null;
+                level++;
+            }
+        }
+    }
+
+    class Base<T> extends Abstract<T> {
+        public Base() {
+            super();
+        }
+
+        public Base(Comparator<? super T> comparator) {
+            super(comparator);
+        }
+
+        public Base(List<? extends T> items) {
+            super();
+            bulkLoad(items);
+        }
+    }
+
+    //Scapegoat-style tree: after every add/delete the highest node on the touched path whose
+    //child outweighs ALPHA of its own weight is rebuilt, which keeps the height logarithmic
+    class Balanced<T> extends Abstract<T> {
+        private static final int ALPHA_NUMERATOR = 2;
+        private static final int ALPHA_DENOMINATOR = 3;
+
+        public Balanced() {
+            super();
+        }
+
+        public Balanced(Comparator<? super T> comparator) {
+            super(comparator);
+        }
+
+        public Balanced(List<? extends T> items) {
+            super();
+            bulkLoad(items);
+        }
+
+        @Override
+        protected boolean recordsPath() {
+            return true;
+        }
+
+        @Override
+        public boolean add(T item) {
+            if (!super.add(item)) {
+                return false;
+            }
+            rebalanceTouchedPath();
+            return true;
+        }
+
+        @Override
+        public boolean delete(int index) {
+            if (!super.delete(index)) {
+                return false;
+            }
+            rebalanceTouchedPath();
+            return true;
+        }
+
+        //Only the nodes Abstract changed the weight of can have left the bound, and it recorded
+        //them on the way, so no second descent costs comparisons
+        private void rebalanceTouchedPath() {
+            for (int i = 0; i < touchedDepth; i++) {
+                Node<T> current = touchedPath[i];
+                if (isUnbalanced(current)) {
+                    replace(i > 0 ? touchedPath[i - 1] : null, current, rebuild(current));
+                    return;
+                }
+            }
+        }
+
+        //For tests: nodes whose child outweighs ALPHA of their own weight, none after any add or delete
+        int unbalancedCount() {
+            int count = 0;
+            ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+            if (root != null) {
+                stack.push(root);
+            }
+            while (!stack.isEmpty()) {
+                Node<T> current = stack.pop();
+                if (isUnbalanced(current)) {
+                    count++;
+                }
+                if (current.left != null)
+                    stack.push(current.left);
+                if (current.right != null)
+                    stack.push(current.right);
+            }
+            return count;
+        }
+
+        private boolean isUnbalanced(Node<T> node) {
+            int left = node.left != null ? node.left.weight : 0;
+            int right = node.right != null ? node.right.weight : 0;
+            int limit = node.weight * ALPHA_NUMERATOR;
+            return left * ALPHA_DENOMINATOR > limit || right * ALPHA_DENOMINATOR > limit;
+        }
+    }
+
+    //Readers share the lock, so at(), forEach() and the range queries run in parallel
+    //with each other and only wait for a writer. Iterators and streams read the tree
+    //in pages under the read lock, so they are weakly consistent with concurrent writes.
+    class Concurrent<T> implements BinaryTree<T> {
+        private static final int PAGE_SIZE = 256;
+
+        private final Abstract<T> delegate;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        public Concurrent() {
+            this(new Balanced<T>());
+        }
+
+        public Concurrent(Abstract<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean add(T item) {
+            lock.writeLock().lock();
+            try {
+                return delegate.add(item);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean delete(int index) {
+            lock.writeLock().lock();
+            try {
+                return delegate.delete(index);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public T at(int index) {
+            lock.readLock().lock();
+            try {
+                return delegate.at(index);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        @Override
+        public int size() {
+            lock.readLock().lock();
+            try {
+                return delegate.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void balance() {
+            lock.writeLock().lock();
+            try {
+                delegate.balance();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void forEach(ElementProcessor<? super T> processor) {
+            lock.readLock().lock();
+            try {
+                delegate.forEach(processor);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void forEachFromRoot(ElementProcessor<? super T> processor) {
+            lock.readLock().lock();
+            try {
+                delegate.forEachFromRoot(processor);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void clear() {
+            lock.writeLock().lock();
+            try {
+                delegate.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void bulkLoad(List<? extends T> items) {
+            lock.writeLock().lock();
+            try {
+                delegate.bulkLoad(items);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int addAll(Collection<? extends T> items) {
+            lock.writeLock().lock();
+            try {
+                return delegate.addAll(items);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int deleteAll(int[] indices) {
+            lock.writeLock().lock();
+            try {
+                return delegate.deleteAll(indices);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int deleteRange(int fromIndex, int toIndex) {
+            lock.writeLock().lock();
+            try {
+                return delegate.deleteRange(fromIndex, toIndex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public int rank(T item) {
+            lock.readLock().lock();
+            try {
+                return delegate.rank(item);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public int countInRange(T from, T to) {
+            lock.readLock().lock();
+            try {
+                return delegate.countInRange(from, to);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor) {
+            lock.readLock().lock();
+            try {
+                delegate.slice(fromIndex, toIndex, processor);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return iterator(0);
+        }
+
+        @Override
+        public Iterator<T> iterator(final int fromIndex) {
+            return new Iterator<T>() {
+                private final ArrayList<T> page = new ArrayList<>(PAGE_SIZE);
+                private int position = 0;
+                private int index = Math.max(fromIndex, 0);
+
+                @Override
+                public boolean hasNext() {
+                    if (position < page.size()) {
+                        return true;
+                    }
+                    page.clear();
+                    position = 0;
+                    slice(index, index + PAGE_SIZE, new ElementProcessor<T>() {
+                        @Override
+                        public void toDo(T v) {
+                            page.add(v);
+                        }
+                    });
+                    index += page.size();
+                    return !page.isEmpty();
+                }
+
+                @Override
+                public T next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return page.get(position++);
+                }
+            };
+        }
+
+        @Override
+        public Spliterator<T> spliterator() {
+            lock.readLock().lock();
+            try {
+                return new TreeSpliterator<>(this, 0, delegate.size(), delegate.comparator);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Stream<T> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        @Override
+        public String toString() {
+            lock.readLock().lock();
+            try {
+                return delegate.toString();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public String toString(int maxDepth) {
+            lock.readLock().lock();
+            try {
+                return delegate.toString(maxDepth);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.zottaa.binarytree;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+//Byte level plumbing between Serialize and NIO channels: whole-file reads into a
+//direct or mapped buffer, and a direct buffer output that writes ASCII without a charset encoder
+final class ChannelStreams {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private ChannelStreams() {
+    }
+
+    //Maps large files, reads small ones into a direct buffer, streams when the channel can't seek
+    static ByteBuffer readAll(FileChannel channel, Progress progress) throws IOException {
+        long size;
+        long position;
+        try {
+            position = channel.position();
+            size = channel.size() - position;
+        } catch (IOException e) {
+            return readAll((ReadableByteChannel) channel, progress);
+        }
+        if (size <= 0 || size > Integer.MAX_VALUE) {
+            return readAll((ReadableByteChannel) channel, progress);
+        }
+        progress.start(size);
+        if (size >= MAP_THRESHOLD) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer)) >= 0) {
+            progress.advance(read);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static ByteBuffer readAll(ReadableByteChannel channel, Progress progress) throws IOException {
+        progress.start(-1);
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        int read;
+        while ((read = channel.read(buffer)) >= 0) {
+            progress.advance(read);
+            if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    static final class Input extends InputStream {
+        private final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    //Does not close the channel, whoever opened it does
+    static final class Output extends OutputStream {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                int count = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+                length -= count;
+            }
+        }
+
+        //Every char is written as its low byte, the tree's text format is plain ASCII
+        void writeAscii(String string) throws IOException {
+            int length = string.length();
+            if (buffer.remaining() < length) {
+                drain();
+            }
+            for (int i = 0; i < length; i++) {
+                if (!buffer.hasRemaining()) {
+                    drain();
+                }
+                buffer.put((byte) string.charAt(i));
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            drain();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.zottaa.binarytree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.zip.CRC32;
+
+//Journaled persistence: snapshot-N.bin holds the tree as a checksummed SnapshotCodec dump and
+//journal-N.log the add/delete/clear operations made since, one record each:
+//op byte, payload, CRC32 of op and payload. load() replays the log over the snapshot and
+//drops a torn tail. compact() writes snapshot-(N+1).bin, and only after it is in place
+//starts journal-(N+1).log and deletes generation N, so a crash at any point leaves a
+//snapshot and the log that belongs to it.
+public class Journal {
+    private static final int ADD = 1;
+    private static final int DELETE = 2;
+    private static final int CLEAR = 3;
+    private static final long COMPACTION_THRESHOLD = 64 * 1024;
+
+    private final File directory;
+    private final UserFactory userFactory = new UserFactory();
+    private final ByteArrayBuffer record = new ByteArrayBuffer();
+    private final DataOutputStream recordOutput = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    private long generation;
+    private long snapshotSize;
+    private FileChannel log;
+
+    //ByteArrayOutputStream with access to its array, so a record is written without a copy
+    private static final class ByteArrayBuffer extends ByteArrayOutputStream {
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    public Journal(File directory) {
+        this.directory = directory;
+    }
+
+    public BinaryTree<UserType> load() throws IOException {
+        close();
+        generation = latestGeneration();
+        deleteOlderGenerations();
+        File snapshot = snapshotFile(generation);
+        BinaryTree<UserType> tree;
+        if (snapshot.exists()) {
+            snapshotSize = snapshot.length();
+            try (FileChannel channel = new FileInputStream(snapshot).getChannel()) {
+                tree = new Serialize.Base().read(ChannelStreams.readAll(channel, new Progress(null)), false);
+            }
+        } else {
+            snapshotSize = 0;
+            tree = new BinaryTree.Balanced<>();
+        }
+
+        File logFile = logFile(generation);
+        if (logFile.exists()) {
+            long valid = replay(tree, logFile);
+            if (valid < logFile.length()) {
+                try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+                    file.setLength(valid);
+                }
+            }
+        }
+        return tree;
+    }
+
+    public void logAdd(UserType item) throws IOException {
+        int typeId = userFactory.getTypeNameList().indexOf(item.typeName());
+        record.reset();
+        recordOutput.writeByte(ADD);
+        Varint.writeUnsigned(recordOutput, typeId);
+        item.writeValue(recordOutput);
+        append();
+    }
+
+    public void logDelete(int index) throws IOException {
+        record.reset();
+        recordOutput.writeByte(DELETE);
+        Varint.writeUnsigned(recordOutput, index);
+        append();
+    }
+
+    public void logClear() throws IOException {
+        record.reset();
+        recordOutput.writeByte(CLEAR);
+        append();
+    }
+
+    //The log may grow up to the snapshot's size before rewriting the snapshot is worth it
+    public boolean needsCompaction() throws IOException {
+        return log != null && log.size() > Math.max(COMPACTION_THRESHOLD, snapshotSize);
+    }
+
+    public void compactIfNeeded(BinaryTree<UserType> tree, String type) throws IOException {
+        if (needsCompaction()) {
+            compact(tree, type);
+        }
+    }
+
+    public void compact(BinaryTree<UserType> tree, String type) throws IOException {
+        int typeId = userFactory.getTypeNameList().indexOf(type);
+        if (typeId < 0) {
+            throw new IllegalArgumentException("Wrong type");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        long next = generation + 1;
+        File temporary = new File(directory, "snapshot-" + next + ".tmp");
+        try (FileOutputStream outputStream = new FileOutputStream(temporary)) {
+            FileChannel channel = outputStream.getChannel();
+            new Serialize.Base().writeCompressed(tree, typeId, true, channel);
+            channel.force(true);
+        }
+        File snapshot = snapshotFile(next);
+        if (!temporary.renameTo(snapshot)) {
+            throw new IOException("Cannot rename " + temporary);
+        }
+
+        close();
+        long previous = generation;
+        generation = next;
+        snapshotSize = snapshot.length();
+        logFile(previous).delete();
+        snapshotFile(previous).delete();
+    }
+
+    public void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private void append() throws IOException {
+        int length = record.size();
+        crc.reset();
+        crc.update(record.array(), 0, length);
+        recordOutput.writeInt((int) crc.getValue());
+
+        if (log == null) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            log = new FileOutputStream(logFile(generation), true).getChannel();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(record.array(), 0, record.size());
+        while (buffer.hasRemaining()) {
+            log.write(buffer);
+        }
+        log.force(false);
+    }
+
+    //Applies the log to tree and returns the length of its valid prefix
+    private long replay(BinaryTree<UserType> tree, File logFile) throws IOException {
+        ByteBuffer content;
+        try (FileChannel channel = new FileInputStream(logFile).getChannel()) {
+            content = ChannelStreams.readAll(channel, new Progress(null));
+        }
+        int start = content.position();
+        DataInputStream input = new DataInputStream(new ChannelStreams.Input(content));
+        List<String> typeNames = userFactory.getTypeNameList();
+        int recordStart = start;
+        while (content.hasRemaining()) {
+            int op;
+            int index = 0;
+            UserType item = null;
+            try {
+                op = input.readUnsignedByte();
+                if (op == ADD) {
+                    int typeId = Varint.readUnsigned(input);
+                    if (typeId < 0 || typeId >= typeNames.size()) {
+                        break;
+                    }
+                    item = userFactory.getBuilderByName(typeNames.get(typeId)).readValue(input);
+                } else if (op == DELETE) {
+                    index = Varint.readUnsigned(input);
+                } else if (op != CLEAR) {
+                    break;
+                }
+                int recordEnd = content.position();
+                int checksum = input.readInt();
+                ByteBuffer range = content.duplicate();
+                range.limit(recordEnd);
+                range.position(recordStart);
+                crc.reset();
+                crc.update(range);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+            } catch (IOException | ArithmeticException e) {
+                break;
+            }
+
+            if (op == ADD) {
+                tree.add(item);
+            } else if (op == DELETE) {
+                tree.delete(index);
+            } else {
+                tree.clear();
+            }
+            recordStart = content.position();
+        }
+        return recordStart - start;
+    }
+
+    private long latestGeneration() {
+        long latest = 0;
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return latest;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith("snapshot-") && name.endsWith(".bin")) {
+                try {
+                    latest = Math.max(latest, Long.parseLong(name.substring(9, name.length() - 4)));
+                } catch (NumberFormatException e) {
+                    //not one of ours
+                }
+            }
+        }
+        return latest;
+    }
+
+    //Leftovers of a compaction that stopped between writing the new snapshot and deleting the old one
+    private void deleteOlderGenerations() {
+        for (long older = generation - 1; older >= 0; older--) {
+            File snapshot = snapshotFile(older);
+            File logFile = logFile(older);
+            if (!snapshot.exists() && !logFile.exists()) {
+                break;
+            }
+            snapshot.delete();
+            logFile.delete();
+        }
+    }
+
+    private File snapshotFile(long generation) {
+        return new File(directory, "snapshot-" + generation + ".bin");
+    }
+
+    private File logFile(long generation) {
+        return new File(directory, "journal-" + generation + ".log");
+    }
+}
@@ -0,0 +1,570 @@
+package com.github.zottaa.binarytree;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Nodes live in parallel arrays indexed by slot instead of one object per element:
+//left/right/weight are ints, items share one Object[], freed slots form a free list
+//threaded through right[], and the arrays double when full. Rebalances like
+//BinaryTree.Balanced, rebuilding the highest overweight subtree on the updated path.
+public class PackedTree<T> implements BinaryTree<T> {
+    private static final int NIL = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int ALPHA_NUMERATOR = 2;
+    private static final int ALPHA_DENOMINATOR = 3;
+
+    private int[] left;
+    private int[] right;
+    private int[] weight;
+    private Object[] items;
+    private int root;
+    private int size;
+    //first never used slot, slots below it are either in the tree or on the free list
+    private int next;
+    private int free;
+    private int[] scratch;
+    //slots whose weight the last add or delete changed, root first, each the parent of the next
+    private int[] path;
+
+    private final Comparator<? super T> ordering;
+    private Comparator<? super T> comparator;
+
+    public PackedTree() {
+        reset(INITIAL_CAPACITY);
+        this.ordering = null;
+        this.comparator = null;
+    }
+
+    public PackedTree(Comparator<? super T> comparator) {
+        reset(INITIAL_CAPACITY);
+        this.ordering = comparator;
+        this.comparator = comparator;
+    }
+
+    public PackedTree(List<? extends T> items) {
+        this();
+        bulkLoad(items);
+    }
+
+    private void reset(int capacity) {
+        this.left = new int[capacity];
+        this.right = new int[capacity];
+        this.weight = new int[capacity];
+        this.items = new Object[capacity];
+        this.root = NIL;
+        this.size = 0;
+        this.next = 0;
+        this.free = NIL;
+        this.scratch = null;
+        this.path = new int[INITIAL_CAPACITY];
+    }
+
+    private int allocate(T item) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = right[slot];
+        } else {
+            if (next == items.length) {
+                int capacity = items.length * 2;
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                items = Arrays.copyOf(items, capacity);
+            }
+            slot = next++;
+        }
+        left[slot] = NIL;
+        right[slot] = NIL;
+        weight[slot] = 1;
+        items[slot] = item;
+        return slot;
+    }
+
+    private void release(int slot) {
+        items[slot] = null;
+        left[slot] = NIL;
+        right[slot] = free;
+        free = slot;
+    }
+
+    private void touch(int depth, int slot) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth] = slot;
+    }
+
+    private int weightOf(int slot) {
+        return slot != NIL ? weight[slot] : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int slot) {
+        return (T) items[slot];
+    }
+
+    @Override
+    public boolean add(T item) {
+        if (root == NIL) {
+            this.comparator = ordering != null ? ordering : TreeComparators.forItem(item);
+            this.root = allocate(item);
+            this.size++;
+            return true;
+        }
+
+        int depth = 0;
+        int current = root;
+        while (true) {
+            int comparisonResult = comparator.compare(item(current), item);
+            if (comparisonResult == 0) {
+                restoreWeights(item);
+                return false;
+            }
+            weight[current] += 1;
+            touch(depth++, current);
+
+            int child = comparisonResult > 0 ? left[current] : right[current];
+            if (child == NIL) {
+                child = allocate(item);
+                if (comparisonResult > 0) {
+                    left[current] = child;
+                } else {
+                    right[current] = child;
+                }
+                size++;
+                break;
+            }
+            current = child;
+        }
+        rebalancePath(depth);
+        return true;
+    }
+
+    private void restoreWeights(T item) {
+        int current = root;
+        while (current != NIL) {
+            int comparisonResult = comparator.compare(item(current), item);
+            if (comparisonResult == 0) {
+                return;
+            }
+            weight[current] -= 1;
+            current = comparisonResult > 0 ? left[current] : right[current];
+        }
+    }
+
+    @Override
+    public boolean delete(int index) {
+        if (root == NIL || index < 0 || index >= size)
+            return false;
+
+        int target = index;
+        int depth = 0;
+        int previous = NIL;
+        int current = root;
+        while (true) {
+            int currentIndex = weightOf(left[current]);
+            weight[current] -= 1;
+            touch(depth++, current);
+            if (currentIndex < target) {
+                target -= currentIndex + 1;
+                previous = current;
+                current = right[current];
+            } else if (currentIndex > target) {
+                previous = current;
+                current = left[current];
+            } else {
+                break;
+            }
+        }
+
+        int replacement;
+        if (left[current] == NIL || right[current] == NIL) {
+            replacement = left[current] == NIL ? right[current] : left[current];
+            //the path ends at the parent of the released slot
+            depth--;
+        } else {
+            //the successor takes the place of current on the path
+            int position = depth - 1;
+            int minParent = current;
+            replacement = right[current];
+            while (true) {
+                weight[replacement] -= 1;
+                if (left[replacement] == NIL) {
+                    break;
+                }
+                touch(depth++, replacement);
+                minParent = replacement;
+                replacement = left[replacement];
+            }
+            path[position] = replacement;
+            if (minParent != current) {
+                left[minParent] = right[replacement];
+                right[replacement] = right[current];
+            }
+            left[replacement] = left[current];
+            weight[replacement] = weight[current];
+        }
+        replace(previous, current, replacement);
+        release(current);
+        size--;
+        rebalancePath(depth);
+        return true;
+    }
+
+    //Only the slots on the recorded path changed weight, so only they can have left the bound
+    private void rebalancePath(int depth) {
+        for (int i = 0; i < depth; i++) {
+            int current = path[i];
+            if (isUnbalanced(current)) {
+                replace(i > 0 ? path[i - 1] : NIL, current, rebuild(current));
+                return;
+            }
+        }
+    }
+
+    //For tests: nodes whose child outweighs ALPHA of their own weight, none after any add or delete
+    int unbalancedCount() {
+        int count = 0;
+        for (int slot = 0; slot < next; slot++) {
+            if (items[slot] != null && isUnbalanced(slot)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isUnbalanced(int slot) {
+        int limit = weight[slot] * ALPHA_NUMERATOR;
+        return weightOf(left[slot]) * ALPHA_DENOMINATOR > limit
+                || weightOf(right[slot]) * ALPHA_DENOMINATOR > limit;
+    }
+
+    private void replace(int parent, int current, int replacement) {
+        if (parent == NIL) {
+            root = replacement;
+        } else if (left[parent] == current) {
+            left[parent] = replacement;
+        } else {
+            right[parent] = replacement;
+        }
+    }
+
+    private int rebuild(int subtree) {
+        int count = weight[subtree];
+        if (scratch == null || scratch.length < count) {
+            scratch = new int[Math.max(count, INITIAL_CAPACITY)];
+        }
+        int[] stack = new int[INITIAL_CAPACITY];
+        int depth = 0;
+        int collected = 0;
+        int current = subtree;
+        while (current != NIL || depth > 0) {
+            while (current != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = current;
+                current = left[current];
+            }
+            current = stack[--depth];
+            scratch[collected++] = current;
+            current = right[current];
+        }
+        int linked = link(scratch, 0, count);
+        //only subtree rebuilds reuse the buffer, one sized for the whole tree is let go
+        if (subtree == root) {
+            scratch = null;
+        }
+        return linked;
+    }
+
+    private int link(int[] slots, int from, int to) {
+        if (from >= to) {
+            return NIL;
+        }
+        int middle = (from + to) >>> 1;
+        int slot = slots[middle];
+        left[slot] = link(slots, from, middle);
+        right[slot] = link(slots, middle + 1, to);
+        weight[slot] = to - from;
+        return slot;
+    }
+
+    @Override
+    public T at(int index) {
+        if (index < 0 || index >= size || root == NIL) {
+            return null;
+        }
+        int current = root;
+        while (true) {
+            int currentIndex = weightOf(left[current]);
+            if (currentIndex == index)
+                return item(current);
+
+            if (currentIndex < index) {
+                index -= currentIndex + 1;
+                current = right[current];
+            } else {
+                current = left[current];
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void balance() {
+        if (root != NIL) {
+            root = rebuild(root);
+        }
+    }
+
+    @Override
+    public void forEach(ElementProcessor<? super T> processor) {
+        for (Iterator<T> iterator = iterator(0); iterator.hasNext(); ) {
+            processor.toDo(iterator.next());
+        }
+    }
+
+    @Override
+    public void forEachFromRoot(ElementProcessor<? super T> processor) {
+        if (root == NIL) {
+            return;
+        }
+        int[] stack = new int[INITIAL_CAPACITY];
+        int depth = 0;
+        stack[depth++] = root;
+        while (depth > 0) {
+            int current = stack[--depth];
+            processor.toDo(item(current));
+            if (depth + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (right[current] != NIL)
+                stack[depth++] = right[current];
+            if (left[current] != NIL)
+                stack[depth++] = left[current];
+        }
+    }
+
+    @Override
+    public void clear() {
+        reset(INITIAL_CAPACITY);
+    }
+
+    //Sorted items are stored in consecutive slots, so in-order traversal walks memory forwards
+    @Override
+    public void bulkLoad(List<? extends T> items) {
+        if (items.isEmpty()) {
+            reset(INITIAL_CAPACITY);
+            return;
+        }
+        Comparator<? super T> comparator = ordering != null ? ordering : TreeComparators.forItem(items.get(0));
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) items.toArray();
+        Arrays.sort(sorted, comparator);
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (comparator.compare(sorted[count - 1], sorted[i]) != 0) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        this.comparator = comparator;
+        load(sorted, count);
+    }
+
+    private void load(T[] sorted, int count) {
+        reset(Math.max(count, INITIAL_CAPACITY));
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            slots[i] = allocate(sorted[i]);
+        }
+        this.root = link(slots, 0, count);
+        this.size = count;
+    }
+
+    private TreeBatches.Loader<T> loader() {
+        return new TreeBatches.Loader<T>() {
+            @Override
+            public void load(T[] sorted, int count) {
+                PackedTree.this.load(sorted, count);
+            }
+        };
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> items) {
+        return TreeBatches.addAll(this, items, comparator, loader());
+    }
+
+    @Override
+    public int deleteAll(int[] indices) {
+        return TreeBatches.deleteAll(this, indices, loader());
+    }
+
+    @Override
+    public int deleteRange(int fromIndex, int toIndex) {
+        return TreeBatches.deleteRange(this, fromIndex, toIndex, loader());
+    }
+
+    @Override
+    public int rank(T item) {
+        return rank(item, false);
+    }
+
+    @Override
+    public int countInRange(T from, T to) {
+        if (root == NIL || comparator.compare(from, to) > 0) {
+            return 0;
+        }
+        return rank(to, true) - rank(from, false);
+    }
+
+    private int rank(T item, boolean inclusive) {
+        int rank = 0;
+        int current = root;
+        while (current != NIL) {
+            int comparisonResult = comparator.compare(item(current), item);
+            if (comparisonResult > 0 || (comparisonResult == 0 && !inclusive)) {
+                current = left[current];
+            } else {
+                rank += weightOf(left[current]) + 1;
+                current = right[current];
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor) {
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, size);
+        Iterator<T> iterator = iterator(fromIndex);
+        for (int remaining = toIndex - fromIndex; remaining > 0; remaining--) {
+            processor.toDo(iterator.next());
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(0);
+    }
+
+    @Override
+    public Iterator<T> iterator(int fromIndex) {
+        return new Iterator<T>() {
+            private int[] stack = new int[INITIAL_CAPACITY];
+            private int depth = 0;
+
+            {
+                if (fromIndex >= 0 && fromIndex < size) {
+                    int index = fromIndex;
+                    int current = root;
+                    while (current != NIL) {
+                        int currentIndex = weightOf(left[current]);
+                        if (currentIndex < index) {
+                            index -= currentIndex + 1;
+                            current = right[current];
+                        } else {
+                            push(current);
+                            if (currentIndex == index) {
+                                break;
+                            }
+                            current = left[current];
+                        }
+                    }
+                }
+            }
+
+            private void push(int slot) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = slot;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return depth > 0;
+            }
+
+            @Override
+            public T next() {
+                if (depth == 0) {
+                    throw new NoSuchElementException();
+                }
+                int slot = stack[--depth];
+                for (int next = right[slot]; next != NIL; next = left[next]) {
+                    push(next);
+                }
+                return item(slot);
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return new TreeSpliterator<>(this, 0, size, comparator);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public String toString() {
+        return toString(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString(int maxDepth) {
+        StringBuilder treeString = new StringBuilder();
+        int[] slots = new int[INITIAL_CAPACITY];
+        int[] levels = new int[INITIAL_CAPACITY];
+        int depth = 0;
+        int current = maxDepth > 0 ? root : NIL;
+        int level = 0;
+        while (current != NIL || depth > 0) {
+            while (current != NIL) {
+                if (depth == slots.length) {
+                    slots = Arrays.copyOf(slots, depth * 2);
+                    levels = Arrays.copyOf(levels, depth * 2);
+                }
+                slots[depth] = current;
+                levels[depth++] = level;
+                current = level + 1 < maxDepth ? right[current] : NIL;
+                level++;
+            }
+            current = slots[--depth];
+            level = levels[depth];
+            for (int i = 0; i < level; i++) {
+                treeString.append("         ");
+            }
+            treeString.append(items[current]);
+            if (level + 1 == maxDepth && weight[current] > 1) {
+                treeString.append(" (+").append(weight[current] - 1).append(")");
+            }
+            treeString.append("\n");
+            current = level + 1 < maxDepth ? left[current] : NIL;
+            level++;
+        }
+        return treeString.toString();
+    }
+}
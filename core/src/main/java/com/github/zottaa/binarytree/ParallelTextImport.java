@@ -0,0 +1,221 @@
+package com.github.zottaa.binarytree;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+//Splits the items of the text format into byte ranges that start on whitespace, parses and
+//sorts every range as a RecursiveTask on the common ForkJoinPool, then k-way merges the sorted runs.
+//Equal items keep the one that comes first in the file, like the sequential path.
+//The result is sorted and distinct, ready for BinaryTree.Abstract.loadSorted.
+final class ParallelTextImport {
+    private static final int MIN_CHUNK_SIZE = 256 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final UserType builder;
+    private final Comparator<UserType> comparator;
+    private final ParseErrorListener listener;
+    private final Progress progress;
+    private int errorCount;
+    private int count;
+
+    private static final class Chunk {
+        UserType[] items;
+        int count;
+        int lines;
+        int column;
+        //line (relative to the chunk) and column pairs of the malformed items
+        int[] errors = new int[0];
+        int errorLength;
+    }
+
+    ParallelTextImport(UserType builder, ParseErrorListener listener, Progress progress) {
+        this.builder = builder;
+        this.comparator = builder.getTypeComparator();
+        this.listener = listener;
+        this.progress = progress;
+    }
+
+    int getErrorCount() {
+        return errorCount;
+    }
+
+    //Number of items at the start of the array parse returned
+    int getCount() {
+        return count;
+    }
+
+    UserType[] parse(ByteBuffer content, int line) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkCount = threads == 1 ? 1
+                : (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, content.remaining() / MIN_CHUNK_SIZE));
+        return parse(content, line, chunkCount);
+    }
+
+    //Chunk count fixed by the caller, so tests can cut small inputs on any machine
+    UserType[] parse(ByteBuffer content, int line, int chunkCount) {
+        int from = content.position();
+        int to = content.limit();
+        int[] bounds = new int[chunkCount + 1];
+        bounds[0] = from;
+        bounds[chunkCount] = to;
+        for (int i = 1; i < chunkCount; i++) {
+            int bound = Math.max(bounds[i - 1], (int) (from + (long) (to - from) * i / chunkCount));
+            while (bound < to && !isWhitespace(content.get(bound))) {
+                bound++;
+            }
+            bounds[i] = bound;
+        }
+
+        List<ChunkTask> tasks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            tasks.add(new ChunkTask(content, bounds[i], bounds[i + 1]));
+        }
+        //the first task runs on the calling thread, the rest are forked to the common pool
+        ForkJoinTask.invokeAll(tasks);
+        Chunk[] chunks = new Chunk[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            chunks[i] = tasks.get(i).join();
+        }
+
+        reportErrors(chunks, line);
+        return merge(chunks);
+    }
+
+    private final class ChunkTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer content;
+        private final int from;
+        private final int to;
+
+        ChunkTask(ByteBuffer content, int from, int to) {
+            this.content = content;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            final Chunk chunk = new Chunk();
+            ByteBuffer range = content.duplicate();
+            range.limit(to);
+            range.position(from);
+            TextParser parser = new TextParser(builder, new ParseErrorListener() {
+                @Override
+                public void onError(int line, int column, String message) {
+                    if (chunk.errorLength == chunk.errors.length) {
+                        chunk.errors = Arrays.copyOf(chunk.errors, Math.max(8, chunk.errorLength * 2));
+                    }
+                    chunk.errors[chunk.errorLength++] = line;
+                    chunk.errors[chunk.errorLength++] = column;
+                }
+            }, progress);
+            List<UserType> elements = new ArrayList<>();
+            parser.parse(range, 0, 0, elements);
+            chunk.lines = parser.getLine();
+            chunk.column = parser.getColumn();
+
+            UserType[] items = elements.toArray(new UserType[0]);
+            Arrays.sort(items, comparator);
+            int count = items.length > 0 ? 1 : 0;
+            for (int i = 1; i < items.length; i++) {
+                if (comparator.compare(items[count - 1], items[i]) != 0) {
+                    items[count++] = items[i];
+                }
+            }
+            chunk.items = items;
+            chunk.count = count;
+            return chunk;
+        }
+    }
+
+    //Chunks only know positions relative to their own start, so errors are reported in file order here
+    private void reportErrors(Chunk[] chunks, int line) {
+        int column = 0;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.errorLength; i += 2) {
+                errorCount++;
+                if (listener != null) {
+                    int errorLine = chunk.errors[i];
+                    int errorColumn = chunk.errors[i + 1];
+                    listener.onError(line + errorLine, errorLine == 0 ? column + errorColumn : errorColumn,
+                            "Malformed " + builder.typeName());
+                }
+            }
+            column = chunk.lines == 0 ? column + chunk.column : chunk.column;
+            line += chunk.lines;
+        }
+    }
+
+    //Binary heap of chunk indices ordered by their current item, ties go to the earlier chunk
+    private UserType[] merge(Chunk[] chunks) {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.count;
+        }
+        if (chunks.length == 1) {
+            count = chunks[0].count;
+            return chunks[0].items;
+        }
+
+        int[] positions = new int[chunks.length];
+        int[] heap = new int[chunks.length];
+        int heapSize = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i].count > 0) {
+                heap[heapSize++] = i;
+            }
+        }
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i, chunks, positions);
+        }
+
+        UserType[] merged = new UserType[total];
+        count = 0;
+        while (heapSize > 0) {
+            int top = heap[0];
+            UserType item = chunks[top].items[positions[top]++];
+            if (count == 0 || comparator.compare(merged[count - 1], item) != 0) {
+                merged[count++] = item;
+            }
+            if (positions[top] == chunks[top].count) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0, chunks, positions);
+        }
+        return merged;
+    }
+
+    private void siftDown(int[] heap, int heapSize, int index, Chunk[] chunks, int[] positions) {
+        int chunk = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child], chunks, positions)) {
+                child++;
+            }
+            if (!less(heap[child], chunk, chunks, positions)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = chunk;
+    }
+
+    private boolean less(int first, int second, Chunk[] chunks, int[] positions) {
+        int comparisonResult = comparator.compare(chunks[first].items[positions[first]], chunks[second].items[positions[second]]);
+        return comparisonResult < 0 || (comparisonResult == 0 && first < second);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+}
@@ -0,0 +1,5 @@
+package com.github.zottaa.binarytree;
+
+public interface ParseErrorListener {
+    void onError(int line, int column, String message);
+}
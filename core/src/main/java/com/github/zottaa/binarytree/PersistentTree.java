@@ -0,0 +1,435 @@
+package com.github.zottaa.binarytree;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//Immutable weight-balanced nodes (Adams' trees); every update copies only the path
+//from the root to the changed node and shares the rest with older versions.
+//A PersistentTree is a handle on one version: add/delete move the handle to a new
+//version, plus/minus return a new handle, and snapshot() forks the current one in O(1).
+public class PersistentTree<T> implements BinaryTree<T> {
+    private static final int DELTA = 3;
+    private static final int RATIO = 2;
+
+    static final class Node<T> {
+        final T item;
+        final Node<T> left;
+        final Node<T> right;
+        final int weight;
+
+        Node(T item, Node<T> left, Node<T> right) {
+            this.item = item;
+            this.left = left;
+            this.right = right;
+            this.weight = weight(left) + weight(right) + 1;
+        }
+    }
+
+    private volatile Node<T> root;
+    private final Comparator<? super T> ordering;
+    private Comparator<? super T> comparator;
+
+    public PersistentTree() {
+        this.root = null;
+        this.ordering = null;
+        this.comparator = null;
+    }
+
+    public PersistentTree(Comparator<? super T> comparator) {
+        this.root = null;
+        this.ordering = comparator;
+        this.comparator = comparator;
+    }
+
+    private PersistentTree(Node<T> root, Comparator<? super T> ordering, Comparator<? super T> comparator) {
+        this.root = root;
+        this.ordering = ordering;
+        this.comparator = comparator;
+    }
+
+    public PersistentTree<T> snapshot() {
+        return new PersistentTree<>(root, ordering, comparator);
+    }
+
+    public PersistentTree<T> plus(T item) {
+        Node<T> current = root;
+        Comparator<? super T> comparator = current != null ? this.comparator : comparatorFor(item);
+        return new PersistentTree<>(insert(current, item, comparator), ordering, comparator);
+    }
+
+    public PersistentTree<T> minus(int index) {
+        Node<T> current = root;
+        if (index < 0 || index >= weight(current)) {
+            return this;
+        }
+        return new PersistentTree<>(remove(current, index), ordering, comparator);
+    }
+
+    private Comparator<? super T> comparatorFor(T item) {
+        return ordering != null ? ordering : TreeComparators.forItem(item);
+    }
+
+    @Override
+    public boolean add(T item) {
+        if (root == null) {
+            comparator = comparatorFor(item);
+        }
+        Node<T> current = root;
+        Node<T> updated = insert(current, item, comparator);
+        root = updated;
+        return updated != current;
+    }
+
+    @Override
+    public boolean delete(int index) {
+        Node<T> current = root;
+        if (index < 0 || index >= weight(current)) {
+            return false;
+        }
+        root = remove(current, index);
+        return true;
+    }
+
+    @Override
+    public T at(int index) {
+        Node<T> current = root;
+        if (index < 0 || index >= weight(current)) {
+            return null;
+        }
+        while (true) {
+            int currentIndex = weight(current.left);
+            if (currentIndex == index)
+                return current.item;
+
+            if (currentIndex < index) {
+                index -= currentIndex + 1;
+                current = current.right;
+            } else {
+                current = current.left;
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int size() {
+        return weight(root);
+    }
+
+    @Override
+    public void balance() {
+        Node<T> current = root;
+        @SuppressWarnings("unchecked")
+        T[] items = (T[]) new Object[weight(current)];
+        int count = 0;
+        for (Iterator<T> iterator = iterator(current, 0); iterator.hasNext(); ) {
+            items[count++] = iterator.next();
+        }
+        root = build(items, 0, count);
+    }
+
+    @Override
+    public void forEach(ElementProcessor<? super T> processor) {
+        for (Iterator<T> iterator = iterator(root, 0); iterator.hasNext(); ) {
+            processor.toDo(iterator.next());
+        }
+    }
+
+    @Override
+    public void forEachFromRoot(ElementProcessor<? super T> processor) {
+        Node<T> current = root;
+        if (current == null) {
+            return;
+        }
+        ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        stack.push(current);
+        while (!stack.isEmpty()) {
+            Node<T> node = stack.pop();
+            processor.toDo(node.item);
+            if (node.right != null)
+                stack.push(node.right);
+            if (node.left != null)
+                stack.push(node.left);
+        }
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    @Override
+    public void bulkLoad(List<? extends T> items) {
+        if (items.isEmpty()) {
+            root = null;
+            return;
+        }
+        Comparator<? super T> comparator = comparatorFor(items.get(0));
+        @SuppressWarnings("unchecked")
+        T[] sorted = (T[]) items.toArray();
+        Arrays.sort(sorted, comparator);
+        int count = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (comparator.compare(sorted[count - 1], sorted[i]) != 0) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        this.comparator = comparator;
+        this.root = build(sorted, 0, count);
+    }
+
+    private TreeBatches.Loader<T> loader() {
+        return new TreeBatches.Loader<T>() {
+            @Override
+            public void load(T[] sorted, int count) {
+                root = build(sorted, 0, count);
+            }
+        };
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> items) {
+        return TreeBatches.addAll(this, items, comparator, loader());
+    }
+
+    @Override
+    public int deleteAll(int[] indices) {
+        return TreeBatches.deleteAll(this, indices, loader());
+    }
+
+    @Override
+    public int deleteRange(int fromIndex, int toIndex) {
+        return TreeBatches.deleteRange(this, fromIndex, toIndex, loader());
+    }
+
+    @Override
+    public int rank(T item) {
+        return rank(root, item, false);
+    }
+
+    @Override
+    public int countInRange(T from, T to) {
+        Node<T> current = root;
+        if (current == null || comparator.compare(from, to) > 0) {
+            return 0;
+        }
+        return rank(current, to, true) - rank(current, from, false);
+    }
+
+    private int rank(Node<T> current, T item, boolean inclusive) {
+        int rank = 0;
+        while (current != null) {
+            int comparisonResult = comparator.compare(current.item, item);
+            if (comparisonResult > 0 || (comparisonResult == 0 && !inclusive)) {
+                current = current.left;
+            } else {
+                rank += weight(current.left) + 1;
+                current = current.right;
+            }
+        }
+        return rank;
+    }
+
+    @Override
+    public void slice(int fromIndex, int toIndex, ElementProcessor<? super T> processor) {
+        Node<T> current = root;
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, weight(current));
+        Iterator<T> iterator = iterator(current, fromIndex);
+        for (int remaining = toIndex - fromIndex; remaining > 0; remaining--) {
+            processor.toDo(iterator.next());
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(root, 0);
+    }
+
+    @Override
+    public Iterator<T> iterator(int fromIndex) {
+        return iterator(root, fromIndex);
+    }
+
+    //Iterates the version that was current when it was created, whatever happens to the handle later
+    private static <T> Iterator<T> iterator(Node<T> current, int index) {
+        final ArrayDeque<Node<T>> stack = new ArrayDeque<>();
+        if (index >= 0 && index < weight(current)) {
+            while (current != null) {
+                int currentIndex = weight(current.left);
+                if (currentIndex < index) {
+                    index -= currentIndex + 1;
+                    current = current.right;
+                } else {
+                    stack.push(current);
+                    if (currentIndex == index) {
+                        break;
+                    }
+                    current = current.left;
+                }
+            }
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (stack.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<T> node = stack.pop();
+                for (Node<T> next = node.right; next != null; next = next.left) {
+                    stack.push(next);
+                }
+                return node.item;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        PersistentTree<T> snapshot = snapshot();
+        return new TreeSpliterator<>(snapshot, 0, snapshot.size(), comparator);
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @Override
+    public String toString() {
+        return toString(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString(int maxDepth) {
+        StringBuilder treeString = new StringBuilder();
+        ArrayDeque<Node<T>> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> levels = new ArrayDeque<>();
+        Node<T> current = maxDepth > 0 ? root : null;
+        int level = 0;
+        while (current != null || !nodes.isEmpty()) {
+            while (current != null) {
+                nodes.push(current);
+                levels.push(level);
+                current = level + 1 < maxDepth ? current.right : null;
+                level++;
+            }
+            current = nodes.pop();
+            level = levels.pop();
+            for (int i = 0; i < level; i++) {
+                treeString.append("         ");
+            }
+            treeString.append(current.item);
+            if (level + 1 == maxDepth && current.weight > 1) {
+                treeString.append(" (+").append(current.weight - 1).append(")");
+            }
+            treeString.append("\n");
+            current = level + 1 < maxDepth ? current.left : null;
+            level++;
+        }
+        return treeString.toString();
+    }
+
+    private static int weight(Node<?> node) {
+        return node != null ? node.weight : 0;
+    }
+
+    private static <T> Node<T> build(T[] sorted, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<>(sorted[middle], build(sorted, from, middle), build(sorted, middle + 1, to));
+    }
+
+    //Returns node itself when an equal item is already present
+    private static <T> Node<T> insert(Node<T> node, T item, Comparator<? super T> comparator) {
+        if (node == null) {
+            return new Node<>(item, null, null);
+        }
+        int comparisonResult = comparator.compare(node.item, item);
+        if (comparisonResult == 0) {
+            return node;
+        }
+        if (comparisonResult > 0) {
+            Node<T> left = insert(node.left, item, comparator);
+            return left == node.left ? node : balance(node.item, left, node.right);
+        } else {
+            Node<T> right = insert(node.right, item, comparator);
+            return right == node.right ? node : balance(node.item, node.left, right);
+        }
+    }
+
+    private static <T> Node<T> remove(Node<T> node, int index) {
+        int currentIndex = weight(node.left);
+        if (index < currentIndex) {
+            return balance(node.item, remove(node.left, index), node.right);
+        } else if (index > currentIndex) {
+            return balance(node.item, node.left, remove(node.right, index - currentIndex - 1));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        if (node.left.weight > node.right.weight) {
+            Node<T> max = node.left;
+            while (max.right != null) {
+                max = max.right;
+            }
+            return balance(max.item, remove(node.left, node.left.weight - 1), node.right);
+        } else {
+            Node<T> min = node.right;
+            while (min.left != null) {
+                min = min.left;
+            }
+            return balance(min.item, node.left, remove(node.right, 0));
+        }
+    }
+
+    //Restores the weight invariant after a single insertion or removal below item
+    private static <T> Node<T> balance(T item, Node<T> left, Node<T> right) {
+        int leftWeight = weight(left);
+        int rightWeight = weight(right);
+        if (leftWeight + rightWeight <= 1) {
+            return new Node<>(item, left, right);
+        }
+        if (rightWeight > DELTA * leftWeight) {
+            if (weight(right.left) < RATIO * weight(right.right)) {
+                return new Node<>(right.item, new Node<>(item, left, right.left), right.right);
+            }
+            Node<T> middle = right.left;
+            return new Node<>(middle.item,
+                    new Node<>(item, left, middle.left),
+                    new Node<>(right.item, middle.right, right.right));
+        }
+        if (leftWeight > DELTA * rightWeight) {
+            if (weight(left.right) < RATIO * weight(left.left)) {
+                return new Node<>(left.item, left.left, new Node<>(item, left.right, right));
+            }
+            Node<T> middle = left.right;
+            return new Node<>(middle.item,
+                    new Node<>(left.item, left.left, middle.left),
+                    new Node<>(item, middle.right, right));
+        }
+        return new Node<>(item, left, right);
+    }
+}
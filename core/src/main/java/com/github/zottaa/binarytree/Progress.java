@@ -0,0 +1,37 @@
+package com.github.zottaa.binarytree;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Progress of one Serialize call. Forwards to the ProgressListener, if any, and stops the call
+//with CancellationException once the thread that started it is interrupted, so Future.cancel(true)
+//also stops the parse tasks running on other threads. Safe to advance from several threads.
+final class Progress {
+    //elements between two reports
+    static final int INTERVAL = 4096;
+
+    private final ProgressListener listener;
+    private final Thread owner = Thread.currentThread();
+    private final AtomicLong done = new AtomicLong();
+    private volatile long total = -1;
+
+    Progress(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    void start(long total) {
+        this.total = total;
+        done.set(0);
+        advance(0);
+    }
+
+    void advance(long delta) {
+        if (owner.isInterrupted()) {
+            throw new CancellationException("Cancelled");
+        }
+        long value = done.addAndGet(delta);
+        if (listener != null) {
+            listener.onProgress(value, total);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.zottaa.binarytree;
+
+//done counts bytes of input while reading and elements while writing, total is -1 while unknown.
+//Reading a stream reports the bytes received first and starts over from 0 once parsing begins.
+public interface ProgressListener {
+    void onProgress(long done, long total);
+}
@@ -0,0 +1,44 @@
+package com.github.zottaa.binarytree;
+
+//When BinaryTree.Abstract repairs its own shape, see BinaryTree.Abstract.setRebalancePolicy.
+//An add that lands deeper than factor * log2(size) edges below the root rebuilds either the
+//whole tree or, scapegoat style, the lowest subtree on its path whose child outweighs
+//2^(-1/factor) of it; one of them always exists past that depth. A delete that leaves fewer than
+//2^(-1/factor) of the largest size since the last full rebuild rebuilds the whole tree.
+//Both cost O(log n) amortized per operation and keep the height within factor * log2(size) + 1.
+public final class RebalancePolicy {
+    private final double factor;
+    private final boolean rebuildSubtree;
+    private final double depthPerLog;
+    private final double alpha;
+
+    public RebalancePolicy(double factor, boolean rebuildSubtree) {
+        if (!(factor > 1)) {
+            throw new IllegalArgumentException("Factor must be greater than 1");
+        }
+        this.factor = factor;
+        this.rebuildSubtree = rebuildSubtree;
+        this.depthPerLog = factor / Math.log(2);
+        this.alpha = Math.pow(2, -1 / factor);
+    }
+
+    public double getFactor() {
+        return factor;
+    }
+
+    public boolean rebuildsSubtree() {
+        return rebuildSubtree;
+    }
+
+    boolean isTooDeep(int depth, int size) {
+        return depth > depthPerLog * Math.log(size);
+    }
+
+    boolean isTooSparse(int size, int maxSize) {
+        return size < alpha * maxSize;
+    }
+
+    boolean isScapegoat(int childWeight, int weight) {
+        return childWeight > alpha * weight;
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.zottaa.binarytree;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+//Channels are neither opened nor closed here; wrap plain streams with java.nio.channels.Channels.
+//A FileChannel is read through a memory mapping when the file is large.
+//Interrupting the calling thread, e.g. by Future.cancel(true), stops a call with CancellationException.
+public interface Serialize {
+    public void serialize(BinaryTree<UserType> tree, String type, WritableByteChannel channel) throws IOException;
+
+    public void serializeBinary(BinaryTree<UserType> tree, String type, WritableByteChannel channel) throws IOException;
+
+    public void serializeCompressed(BinaryTree<UserType> tree, String type, boolean checksum, WritableByteChannel channel) throws IOException;
+
+    public BinaryTree<UserType> deserialize(ReadableByteChannel channel) throws IOException;
+
+    public BinaryTree<UserType> deserializeParallel(ReadableByteChannel channel) throws IOException;
+
+    abstract class Abstract implements Serialize {
+        //Binary layout: MAGIC, VERSION byte, varint type id (index in UserFactory.getTypeNameList()),
+        //varint element count, then every element in order through UserType.writeValue.
+        //Text files start with the type name, so the first four bytes tell the formats apart.
+        static final int MAGIC = 0x42545245;
+        static final int VERSION = 1;
+        //Sorted delta encoded blocks, see SnapshotCodec
+        static final int SNAPSHOT_VERSION = 2;
+
+        private ParseErrorListener errorListener;
+        private ProgressListener progressListener;
+        private int errorCount;
+
+        public void setErrorListener(ParseErrorListener errorListener) {
+            this.errorListener = errorListener;
+        }
+
+        //Called on the thread doing the work, parallel parsing calls it from several threads
+        public void setProgressListener(ProgressListener progressListener) {
+            this.progressListener = progressListener;
+        }
+
+        //Malformed items skipped by the last deserialize
+        public int getErrorCount() {
+            return errorCount;
+        }
+
+        @Override
+        public void serialize(BinaryTree<UserType> tree, String type, WritableByteChannel channel) throws IOException {
+            final ChannelStreams.Output output = new ChannelStreams.Output(channel);
+            final Progress progress = new Progress(progressListener);
+            progress.start(tree.size());
+            output.writeAscii(type);
+            output.write('\n');
+
+            final IOException[] failure = new IOException[1];
+            tree.forEachFromRoot(new ElementProcessor<UserType>() {
+                private int count;
+
+                @Override
+                public void toDo(UserType v) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        output.write(' ');
+                        output.writeAscii(v.toString());
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                    if (++count == Progress.INTERVAL) {
+                        progress.advance(count);
+                        count = 0;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            output.flush();
+            progress.advance(tree.size() % Progress.INTERVAL);
+        }
+
+        @Override
+        public void serializeBinary(BinaryTree<UserType> tree, String type, WritableByteChannel channel) throws IOException {
+            writeBinary(tree, typeId(type), channel);
+        }
+
+        private static int typeId(String type) {
+            int typeId = new UserFactory().getTypeNameList().indexOf(type);
+            if (typeId < 0) {
+                throw new IllegalArgumentException("Wrong type");
+            }
+            return typeId;
+        }
+
+        void writeBinary(BinaryTree<UserType> tree, int typeId, WritableByteChannel channel) throws IOException {
+            final DataOutputStream output = new DataOutputStream(new ChannelStreams.Output(channel));
+            final Progress progress = new Progress(progressListener);
+            progress.start(tree.size());
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            Varint.writeUnsigned(output, typeId);
+            Varint.writeUnsigned(output, tree.size());
+
+            final IOException[] failure = new IOException[1];
+            tree.forEach(new ElementProcessor<UserType>() {
+                private int count;
+
+                @Override
+                public void toDo(UserType v) {
+                    if (failure[0] != null) {
+                        return;
+                    }
+                    try {
+                        v.writeValue(output);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                    if (++count == Progress.INTERVAL) {
+                        progress.advance(count);
+                        count = 0;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            output.flush();
+            progress.advance(tree.size() % Progress.INTERVAL);
+        }
+
+        @Override
+        public void serializeCompressed(BinaryTree<UserType> tree, String type, boolean checksum, WritableByteChannel channel) throws IOException {
+            writeCompressed(tree, typeId(type), checksum, channel);
+        }
+
+        void writeCompressed(BinaryTree<UserType> tree, int typeId, boolean checksum, WritableByteChannel channel) throws IOException {
+            UserFactory userFactory = new UserFactory();
+            UserType builder = userFactory.getBuilderByName(userFactory.getTypeNameList().get(typeId));
+            ChannelStreams.Output output = new ChannelStreams.Output(channel);
+            new DataOutputStream(output).writeInt(MAGIC);
+            output.write(SNAPSHOT_VERSION);
+            SnapshotCodec.write(tree, builder, typeId, checksum, output, new Progress(progressListener));
+            output.flush();
+        }
+
+        @Override
+        public BinaryTree<UserType> deserialize(ReadableByteChannel channel) throws IOException {
+            Progress progress = new Progress(progressListener);
+            return read(readContent(channel, progress), false, progress);
+        }
+
+        //Text files are parsed in chunks on the common ForkJoinPool, binary files are read as usual
+        @Override
+        public BinaryTree<UserType> deserializeParallel(ReadableByteChannel channel) throws IOException {
+            Progress progress = new Progress(progressListener);
+            return read(readContent(channel, progress), true, progress);
+        }
+
+        private static ByteBuffer readContent(ReadableByteChannel channel, Progress progress) throws IOException {
+            if (channel instanceof FileChannel) {
+                return ChannelStreams.readAll((FileChannel) channel, progress);
+            }
+            return ChannelStreams.readAll(channel, progress);
+        }
+
+        BinaryTree<UserType> read(ByteBuffer content, boolean parallel) throws IOException {
+            return read(content, parallel, new Progress(progressListener));
+        }
+
+        //Progress starts over with the size of content, which the parsers advance through
+        private BinaryTree<UserType> read(ByteBuffer content, boolean parallel, Progress progress) throws IOException {
+            errorCount = 0;
+            progress.start(content.remaining());
+            if (content.remaining() >= 5 && content.getInt(content.position()) == MAGIC) {
+                content.position(content.position() + 4);
+                int version = content.get() & 0xFF;
+                progress.advance(5);
+                if (version == SNAPSHOT_VERSION) {
+                    UserType[] items = SnapshotCodec.read(content, progress);
+                    return toTree(items, items.length);
+                }
+                if (version != VERSION) {
+                    throw new IOException("Unsupported version " + version);
+                }
+                return readBinary(content, progress);
+            }
+            return readText(content, parallel, progress);
+        }
+
+        private BinaryTree<UserType> readBinary(ByteBuffer content, Progress progress) throws IOException {
+            DataInputStream input = new DataInputStream(new ChannelStreams.Input(content));
+            int reported = content.position();
+            UserFactory userFactory = new UserFactory();
+            List<String> typeNames = userFactory.getTypeNameList();
+            int typeId = Varint.readUnsigned(input);
+            if (typeId < 0 || typeId >= typeNames.size()) {
+                throw new IllegalArgumentException("Wrong type");
+            }
+            UserType builder = userFactory.getBuilderByName(typeNames.get(typeId));
+
+            int count = Varint.readUnsigned(input);
+            if (count < 0) {
+                throw new IOException("Wrong element count");
+            }
+            //the count is only a hint for capacity, a truncated file fails on read instead
+            List<UserType> elements = new ArrayList<>(Math.min(count, 1 << 16));
+            for (int i = 0; i < count; i++) {
+                elements.add(builder.readValue(input));
+                if (i % Progress.INTERVAL == Progress.INTERVAL - 1) {
+                    progress.advance(content.position() - reported);
+                    reported = content.position();
+                }
+            }
+            progress.advance(content.position() - reported);
+            return toTree(elements.toArray(new UserType[0]), elements.size());
+        }
+
+        //Type name on the first line, then items separated by spaces and line breaks
+        private BinaryTree<UserType> readText(ByteBuffer content, boolean parallel, Progress progress) {
+            int start = content.position();
+            while (content.hasRemaining() && content.get() != '\n') {
+            }
+            int end = content.position();
+            if (end > start && content.get(end - 1) == '\n') {
+                end--;
+            }
+            if (end > start && content.get(end - 1) == '\r') {
+                end--;
+            }
+            byte[] header = new byte[end - start];
+            for (int i = 0; i < header.length; i++) {
+                header[i] = content.get(start + i);
+            }
+            progress.advance(content.position() - start);
+            String type = new String(header, StandardCharsets.ISO_8859_1);
+            UserFactory userFactory = new UserFactory();
+            if (!userFactory.getTypeNameList().contains(type)) {
+                throw new IllegalArgumentException("Wrong type");
+            }
+
+            UserType builder = userFactory.getBuilderByName(type);
+            if (parallel) {
+                ParallelTextImport parallelImport = new ParallelTextImport(builder, errorListener, progress);
+                UserType[] items = parallelImport.parse(content, 2);
+                errorCount = parallelImport.getErrorCount();
+                return toTree(items, parallelImport.getCount());
+            }
+            TextParser parser = new TextParser(builder, errorListener, progress);
+            List<UserType> elements = new ArrayList<>();
+            parser.parse(content, 2, 0, elements);
+            errorCount = parser.getErrorCount();
+            return toTree(elements.toArray(new UserType[0]), elements.size());
+        }
+
+        //Snapshots, binary files written in order and the parallel merge are already sorted and distinct,
+        //so they are loaded as they are; anything else, like pre-order text, goes through bulkLoad
+        private static BinaryTree<UserType> toTree(UserType[] items, int count) {
+            BinaryTree.Balanced<UserType> tree = new BinaryTree.Balanced<>();
+            if (count == 0) {
+                return tree;
+            }
+            Comparator<UserType> comparator = items[0].getTypeComparator();
+            for (int i = 1; i < count; i++) {
+                if (comparator.compare(items[i - 1], items[i]) >= 0) {
+                    tree.bulkLoad(Arrays.asList(items).subList(0, count));
+                    return tree;
+                }
+            }
+            tree.loadSorted(items, count);
+            return tree;
+        }
+
+    }
+
+    class Base extends Abstract {
+
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.zottaa.binarytree;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+//Compressed snapshot: the tree's items in sorted order, cut into blocks of BLOCK_SIZE items.
+//A block stores its items column by column. Each integer field column is written either as
+//zig-zag varints of the raw values or of the differences to the previous item, whichever is
+//shorter: fields that follow the sort order shrink to a byte or two, fields that don't
+//(a point's x and y under the distance order) cost no more than raw.
+//Layout after Serialize's MAGIC and SNAPSHOT_VERSION: flags byte, varint type id, varint field
+//count, varint item count, then per block: varint item count, varint byte length, the bytes
+//(per column a RAW or DELTA byte and the values), and a CRC32 of the bytes when FLAG_CHECKSUM is set.
+final class SnapshotCodec {
+    static final int FLAG_CHECKSUM = 1;
+    private static final int RAW = 0;
+    private static final int DELTA = 1;
+    private static final int BLOCK_SIZE = 4096;
+    private static final int MAX_FIELDS = 8;
+
+    private SnapshotCodec() {
+    }
+
+    static void write(BinaryTree<UserType> tree, UserType builder, int typeId, boolean checksum,
+                      final ChannelStreams.Output output, Progress progress) throws IOException {
+        final int fieldCount = builder.toFields(new int[MAX_FIELDS]);
+        output.write(checksum ? FLAG_CHECKSUM : 0);
+        writeVarint(output, typeId);
+        writeVarint(output, fieldCount);
+        writeVarint(output, tree.size());
+
+        progress.start(tree.size());
+        final Encoder encoder = new Encoder(output, fieldCount, checksum, progress);
+        tree.forEach(new ElementProcessor<UserType>() {
+            @Override
+            public void toDo(UserType v) {
+                encoder.add(v);
+            }
+        });
+        encoder.finish();
+    }
+
+    private static void writeVarint(ChannelStreams.Output output, int value) throws IOException {
+        byte[] bytes = new byte[Varint.MAX_LENGTH];
+        output.write(bytes, 0, Varint.writeUnsigned(bytes, 0, value));
+    }
+
+    private static final class Encoder {
+        private final ChannelStreams.Output output;
+        private final int fieldCount;
+        private final boolean checksum;
+        private final Progress progress;
+        private final CRC32 crc = new CRC32();
+        private final int[] fields = new int[MAX_FIELDS];
+        //columns[field * BLOCK_SIZE + item]
+        private final int[] columns;
+        private final byte[] block;
+        private int count;
+        private IOException failure;
+
+        Encoder(ChannelStreams.Output output, int fieldCount, boolean checksum, Progress progress) {
+            this.output = output;
+            this.fieldCount = fieldCount;
+            this.checksum = checksum;
+            this.progress = progress;
+            this.columns = new int[fieldCount * BLOCK_SIZE];
+            this.block = new byte[fieldCount * (BLOCK_SIZE * Varint.MAX_LENGTH + 1)];
+        }
+
+        void add(UserType item) {
+            if (failure != null) {
+                return;
+            }
+            if (item.toFields(fields) != fieldCount) {
+                failure = new IOException("Unexpected field count for " + item);
+                return;
+            }
+            for (int i = 0; i < fieldCount; i++) {
+                columns[i * BLOCK_SIZE + count] = fields[i];
+            }
+            if (++count == BLOCK_SIZE) {
+                flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (failure == null && count > 0) {
+                flush();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        private void flush() {
+            int length = 0;
+            for (int i = 0; i < fieldCount; i++) {
+                int from = i * BLOCK_SIZE;
+                int rawLength = 0;
+                int deltaLength = 0;
+                int previous = 0;
+                for (int j = from; j < from + count; j++) {
+                    rawLength += signedLength(columns[j]);
+                    deltaLength += signedLength(columns[j] - previous);
+                    previous = columns[j];
+                }
+                boolean delta = deltaLength < rawLength;
+                block[length++] = (byte) (delta ? DELTA : RAW);
+                previous = 0;
+                for (int j = from; j < from + count; j++) {
+                    length = Varint.writeSigned(block, length, delta ? columns[j] - previous : columns[j]);
+                    previous = columns[j];
+                }
+            }
+            try {
+                writeVarint(output, count);
+                writeVarint(output, length);
+                output.write(block, 0, length);
+                if (checksum) {
+                    crc.reset();
+                    crc.update(block, 0, length);
+                    int value = (int) crc.getValue();
+                    output.write(value >>> 24);
+                    output.write(value >>> 16);
+                    output.write(value >>> 8);
+                    output.write(value);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            progress.advance(count);
+            count = 0;
+        }
+
+        private static int signedLength(int value) {
+            int zigZag = (value << 1) ^ (value >> 31);
+            return zigZag == 0 ? 1 : (31 - Integer.numberOfLeadingZeros(zigZag)) / 7 + 1;
+        }
+    }
+
+    //Decodes straight into a sorted array, which the tree's bulk load builds in linear time
+    //Progress advances by the bytes of every block
+    static UserType[] read(ByteBuffer content, Progress progress) throws IOException {
+        try {
+            int reported = content.position();
+            int flags = content.get() & 0xFF;
+            UserFactory userFactory = new UserFactory();
+            int typeId = Varint.readUnsigned(content);
+            if (typeId < 0 || typeId >= userFactory.getTypeNameList().size()) {
+                throw new IllegalArgumentException("Wrong type");
+            }
+            UserType builder = userFactory.getBuilderByName(userFactory.getTypeNameList().get(typeId));
+            int fieldCount = Varint.readUnsigned(content);
+            int total = Varint.readUnsigned(content);
+            if (fieldCount < 0 || fieldCount > MAX_FIELDS || total < 0) {
+                throw new IOException("Malformed snapshot header");
+            }
+
+            CRC32 crc = new CRC32();
+            int[] fields = new int[MAX_FIELDS];
+            int[] columns = new int[fieldCount * BLOCK_SIZE];
+            //the count is only a hint for capacity, a truncated file fails on read instead
+            UserType[] items = new UserType[Math.min(total, 1 << 16)];
+            int size = 0;
+            while (size < total) {
+                int count = Varint.readUnsigned(content);
+                int length = Varint.readUnsigned(content);
+                if (count <= 0 || count > BLOCK_SIZE || count > total - size || length < 0 || length > content.remaining()) {
+                    throw new IOException("Malformed snapshot block");
+                }
+                int end = content.position() + length;
+                if ((flags & FLAG_CHECKSUM) != 0) {
+                    ByteBuffer range = content.duplicate();
+                    range.limit(end);
+                    crc.reset();
+                    crc.update(range);
+                    int expected = content.getInt(end);
+                    if ((int) crc.getValue() != expected) {
+                        throw new IOException("Snapshot block checksum mismatch");
+                    }
+                }
+
+                if (items.length < size + count) {
+                    items = Arrays.copyOf(items, Math.min(total, Math.max(size + count, items.length * 2)));
+                }
+                for (int j = 0; j < fieldCount; j++) {
+                    int mode = content.get();
+                    if (mode != RAW && mode != DELTA) {
+                        throw new IOException("Malformed snapshot block");
+                    }
+                    int previous = 0;
+                    for (int i = 0; i < count; i++) {
+                        int value = Varint.readSigned(content);
+                        if (mode == DELTA) {
+                            value += previous;
+                            previous = value;
+                        }
+                        columns[j * BLOCK_SIZE + i] = value;
+                    }
+                }
+                for (int i = 0; i < count; i++) {
+                    for (int j = 0; j < fieldCount; j++) {
+                        fields[j] = columns[j * BLOCK_SIZE + i];
+                    }
+                    UserType item = builder.fromFields(fields, fieldCount);
+                    if (item == null) {
+                        throw new IOException("Malformed snapshot item");
+                    }
+                    items[size++] = item;
+                }
+                if (content.position() != end) {
+                    throw new IOException("Malformed snapshot block");
+                }
+                if ((flags & FLAG_CHECKSUM) != 0) {
+                    content.position(end + 4);
+                }
+                progress.advance(content.position() - reported);
+                reported = content.position();
+            }
+            progress.advance(content.position() - reported);
+            return items.length == size ? items : Arrays.copyOf(items, size);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+}
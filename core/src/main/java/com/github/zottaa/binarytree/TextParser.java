@@ -0,0 +1,130 @@
+package com.github.zottaa.binarytree;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+//Single pass over the bytes of the text format: items are separated by whitespace and their
+//integer fields by the type's separator, fields are accumulated in place and handed to
+//UserType.fromFields, so the element itself is the only allocation per item.
+//Malformed items are skipped and reported with their 1-based line and column.
+//Progress advances by the bytes consumed every Progress.INTERVAL items.
+final class TextParser {
+    private static final int MAX_FIELDS = 3;
+
+    private final UserType builder;
+    private final char separator;
+    private final ParseErrorListener listener;
+    private final Progress progress;
+    private final int[] fields = new int[MAX_FIELDS];
+    private int errorCount;
+    private int line;
+    private int column;
+
+    TextParser(UserType builder, ParseErrorListener listener, Progress progress) {
+        this.builder = builder;
+        this.separator = builder.fieldSeparator();
+        this.listener = listener;
+        this.progress = progress;
+    }
+
+    int getErrorCount() {
+        return errorCount;
+    }
+
+    //Line and column where the last parse() stopped
+    int getLine() {
+        return line;
+    }
+
+    int getColumn() {
+        return column;
+    }
+
+    //column is the number of bytes already consumed on the line the content starts in
+    void parse(ByteBuffer content, int line, int column, List<UserType> elements) {
+        int tokenColumn = 0;
+        boolean inToken = false;
+        boolean malformed = false;
+        int fieldCount = 0;
+        long value = 0;
+        boolean negative = false;
+        boolean hasDigits = false;
+        int tokens = 0;
+        int reported = content.position();
+
+        while (true) {
+            int b = content.hasRemaining() ? content.get() & 0xFF : -1;
+            column++;
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == -1) {
+                if (inToken) {
+                    if (!malformed && hasDigits) {
+                        fields[fieldCount++] = (int) (negative ? -value : value);
+                        UserType element = builder.fromFields(fields, fieldCount);
+                        if (element != null) {
+                            elements.add(element);
+                        } else {
+                            malformed = true;
+                        }
+                    } else {
+                        malformed = true;
+                    }
+                    if (malformed) {
+                        report(line, tokenColumn);
+                    }
+                    inToken = false;
+                    malformed = false;
+                    fieldCount = 0;
+                    value = 0;
+                    negative = false;
+                    hasDigits = false;
+                    if (++tokens == Progress.INTERVAL) {
+                        tokens = 0;
+                        progress.advance(content.position() - reported);
+                        reported = content.position();
+                    }
+                }
+                if (b == -1) {
+                    progress.advance(content.position() - reported);
+                    this.line = line;
+                    this.column = column - 1;
+                    return;
+                }
+                if (b == '\n') {
+                    line++;
+                    column = 0;
+                }
+                continue;
+            }
+            if (!inToken) {
+                inToken = true;
+                tokenColumn = column;
+            }
+            if (malformed) {
+                continue;
+            }
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                hasDigits = true;
+                if (value > (negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE)) {
+                    malformed = true;
+                }
+            } else if ((b == '-' || b == '+') && !hasDigits && !negative) {
+                negative = b == '-';
+            } else if (b == separator && hasDigits && fieldCount < MAX_FIELDS - 1) {
+                fields[fieldCount++] = (int) (negative ? -value : value);
+                value = 0;
+                negative = false;
+                hasDigits = false;
+            } else {
+                malformed = true;
+            }
+        }
+    }
+
+    private void report(int line, int column) {
+        errorCount++;
+        if (listener != null) {
+            listener.onError(line, column, "Malformed " + builder.typeName());
+        }
+    }
+}
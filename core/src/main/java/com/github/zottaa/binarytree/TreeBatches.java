@@ -0,0 +1,174 @@
+package com.github.zottaa.binarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+//addAll, deleteAll and deleteRange for every engine. A batch too small to pay for a rebuild
+//goes through add/delete one item at a time; a larger one is merged with the in-order
+//contents in one pass and handed to the engine's Loader, which builds a balanced tree straight
+//from sorted distinct items, so the whole update is O(n + k log k).
+final class TreeBatches {
+    private TreeBatches() {
+    }
+
+    //Replaces the contents of a tree with count sorted distinct items, skipping bulkLoad's sort
+    interface Loader<T> {
+        void load(T[] sorted, int count);
+    }
+
+    //k descents of about log2(n) steps each against one pass over n items
+    static boolean isSmallBatch(int batch, int size) {
+        return (long) batch * (32 - Integer.numberOfLeadingZeros(size)) < size;
+    }
+
+    //comparator is the tree's, or null while it has none
+    static <T> int addAll(BinaryTree<T> tree, Collection<? extends T> items, Comparator<? super T> comparator, Loader<T> loader) {
+        int before = tree.size();
+        if (items.isEmpty()) {
+            return 0;
+        }
+        if (before == 0) {
+            tree.bulkLoad(items instanceof List ? (List<? extends T>) items : new ArrayList<T>(items));
+            return tree.size();
+        }
+        if (isSmallBatch(items.size(), before)) {
+            for (T item : items) {
+                tree.add(item);
+            }
+            return tree.size() - before;
+        }
+
+        @SuppressWarnings("unchecked")
+        T[] batch = (T[]) items.toArray();
+        //stable sort keeps the first of equal items, as add() does
+        Arrays.sort(batch, comparator);
+        Merger<T> merger = new Merger<>(batch, comparator, before);
+        tree.forEach(merger);
+        merger.finish();
+        loader.load(merger.merged, merger.count);
+        return tree.size() - before;
+    }
+
+    //indices refer to positions before the call, duplicates and indices out of range are ignored
+    static <T> int deleteAll(BinaryTree<T> tree, int[] indices, Loader<T> loader) {
+        int size = tree.size();
+        int[] sorted = indices.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int index : sorted) {
+            if (index >= 0 && index < size && (count == 0 || sorted[count - 1] != index)) {
+                sorted[count++] = index;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        if (isSmallBatch(count, size)) {
+            //from the back, so the indices still to go keep their positions
+            for (int i = count - 1; i >= 0; i--) {
+                tree.delete(sorted[i]);
+            }
+            return count;
+        }
+
+        Collector<T> collector = new Collector<>(size - count, sorted, count);
+        tree.forEach(collector);
+        loader.load(collector.kept, collector.count);
+        return count;
+    }
+
+    static <T> int deleteRange(BinaryTree<T> tree, int fromIndex, int toIndex, Loader<T> loader) {
+        int size = tree.size();
+        fromIndex = Math.max(fromIndex, 0);
+        toIndex = Math.min(toIndex, size);
+        int count = toIndex - fromIndex;
+        if (count <= 0) {
+            return 0;
+        }
+        if (isSmallBatch(count, size)) {
+            for (int i = toIndex - 1; i >= fromIndex; i--) {
+                tree.delete(i);
+            }
+            return count;
+        }
+
+        Collector<T> collector = new Collector<>(size - count, null, 0);
+        tree.slice(0, fromIndex, collector);
+        tree.slice(toIndex, size, collector);
+        loader.load(collector.kept, collector.count);
+        return count;
+    }
+
+    //Merges the tree's items, passed in order, with the sorted batch; the tree's item wins a tie
+    private static final class Merger<T> implements ElementProcessor<T> {
+        private final T[] batch;
+        private final Comparator<? super T> comparator;
+        private final T[] merged;
+        private int position;
+        private int count;
+
+        @SuppressWarnings("unchecked")
+        Merger(T[] batch, Comparator<? super T> comparator, int size) {
+            this.batch = batch;
+            this.comparator = comparator;
+            this.merged = (T[]) new Object[size + batch.length];
+        }
+
+        @Override
+        public void toDo(T v) {
+            while (position < batch.length) {
+                int comparisonResult = comparator.compare(batch[position], v);
+                if (comparisonResult > 0) {
+                    break;
+                }
+                if (comparisonResult < 0) {
+                    append(batch[position]);
+                }
+                position++;
+            }
+            merged[count++] = v;
+        }
+
+        private void append(T item) {
+            if (count == 0 || comparator.compare(merged[count - 1], item) != 0) {
+                merged[count++] = item;
+            }
+        }
+
+        void finish() {
+            while (position < batch.length) {
+                append(batch[position++]);
+            }
+        }
+    }
+
+    //Keeps the items whose position is not in the sorted skipped indices
+    private static final class Collector<T> implements ElementProcessor<T> {
+        private final T[] kept;
+        private final int[] skipped;
+        private final int skippedCount;
+        private int index;
+        private int next;
+        private int count;
+
+        @SuppressWarnings("unchecked")
+        Collector(int capacity, int[] skipped, int skippedCount) {
+            this.kept = (T[]) new Object[capacity];
+            this.skipped = skipped;
+            this.skippedCount = skippedCount;
+        }
+
+        @Override
+        public void toDo(T v) {
+            if (next < skippedCount && skipped[next] == index) {
+                next++;
+            } else {
+                kept[count++] = v;
+            }
+            index++;
+        }
+    }
+}
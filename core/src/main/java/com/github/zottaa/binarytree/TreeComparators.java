@@ -0,0 +1,22 @@
+package com.github.zottaa.binarytree;
+
+import java.util.Comparator;
+
+//Picks the comparator of a tree that was not given one, once, from its first item.
+//The returned comparators cast their arguments, so inserting an item of another
+//type fails with ClassCastException instead of comparing as equal.
+final class TreeComparators {
+    private TreeComparators() {
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <T> Comparator<? super T> forItem(T item) {
+        if (item instanceof UserType) {
+            return (Comparator<? super T>) ((UserType) item).getTypeComparator();
+        }
+        if (item instanceof Comparable) {
+            return (Comparator) Comparator.naturalOrder();
+        }
+        throw new IllegalArgumentException("No comparator for " + item.getClass().getName());
+    }
+}
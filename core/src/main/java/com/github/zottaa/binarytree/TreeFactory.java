@@ -0,0 +1,29 @@
+package com.github.zottaa.binarytree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class TreeFactory {
+    public ArrayList<String> getEngineNameList() {
+        return new ArrayList<>(Arrays.asList("Base", "Balanced", "Packed", "Persistent", "BPlus", "Concurrent"));
+    }
+
+    public <T> BinaryTree<T> getTreeByName(String name) {
+        switch (name) {
+            case "Base":
+                return new BinaryTree.Base<>();
+            case "Balanced":
+                return new BinaryTree.Balanced<>();
+            case "Packed":
+                return new PackedTree<>();
+            case "Persistent":
+                return new PersistentTree<>();
+            case "BPlus":
+                return new BPlusTree<>();
+            case "Concurrent":
+                return new BinaryTree.Concurrent<>();
+            default:
+                return null;
+        }
+    }
+}
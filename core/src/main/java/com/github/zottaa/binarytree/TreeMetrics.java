@@ -0,0 +1,167 @@
+package com.github.zottaa.binarytree;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+//Listener for the hot paths of BinaryTree.Abstract, see BinaryTree.Abstract.setMetrics.
+//Path length is the number of nodes visited, comparisons the comparator calls of one operation.
+//Calls come from the thread doing the operation; under BinaryTree.Concurrent readers call
+//onAt and onRank in parallel.
+public interface TreeMetrics {
+    void onAdd(int comparisons, int pathLength, boolean added);
+
+    void onDelete(int pathLength);
+
+    void onAt(int pathLength);
+
+    void onRank(int comparisons);
+
+    void onRebuild(int nodes, long nanos);
+
+    //Counts values in power of two buckets: bucket 0 holds 0, bucket i holds [2^(i-1), 2^i)
+    class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+            count.increment();
+            sum.add(value);
+            long current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.reset();
+            sum.reset();
+            max.set(0);
+        }
+
+        public Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return new Snapshot(count.sum(), sum.sum(), max.get(), counts);
+        }
+
+        //Values read while recording goes on may be off by the operations in flight
+        public static class Snapshot {
+            public final long count;
+            public final long sum;
+            public final long max;
+            private final long[] buckets;
+
+            Snapshot(long count, long sum, long max, long[] buckets) {
+                this.count = count;
+                this.sum = sum;
+                this.max = max;
+                this.buckets = buckets;
+            }
+
+            public double mean() {
+                return count == 0 ? 0 : (double) sum / count;
+            }
+
+            //Upper bound of the bucket holding the given quantile, so within a factor of two
+            public long quantile(double quantile) {
+                long target = (long) Math.ceil(quantile * count);
+                long seen = 0;
+                for (int i = 0; i < buckets.length; i++) {
+                    seen += buckets[i];
+                    if (seen >= Math.max(target, 1)) {
+                        return i == 0 ? 0 : i == 63 ? max : Math.min(max, (1L << i) - 1);
+                    }
+                }
+                return max;
+            }
+        }
+    }
+
+    class Base implements TreeMetrics {
+        private final Histogram addComparisons = new Histogram();
+        private final Histogram addPathLength = new Histogram();
+        private final Histogram deletePathLength = new Histogram();
+        private final Histogram atPathLength = new Histogram();
+        private final Histogram rankComparisons = new Histogram();
+        private final Histogram rebuildNanos = new Histogram();
+        private final LongAdder rebuiltNodes = new LongAdder();
+        private final LongAdder duplicatesRejected = new LongAdder();
+
+        @Override
+        public void onAdd(int comparisons, int pathLength, boolean added) {
+            addComparisons.record(comparisons);
+            addPathLength.record(pathLength);
+            if (!added) {
+                duplicatesRejected.increment();
+            }
+        }
+
+        @Override
+        public void onDelete(int pathLength) {
+            deletePathLength.record(pathLength);
+        }
+
+        @Override
+        public void onAt(int pathLength) {
+            atPathLength.record(pathLength);
+        }
+
+        @Override
+        public void onRank(int comparisons) {
+            rankComparisons.record(comparisons);
+        }
+
+        @Override
+        public void onRebuild(int nodes, long nanos) {
+            rebuildNanos.record(nanos);
+            rebuiltNodes.add(nodes);
+        }
+
+        public void reset() {
+            addComparisons.reset();
+            addPathLength.reset();
+            deletePathLength.reset();
+            atPathLength.reset();
+            rankComparisons.reset();
+            rebuildNanos.reset();
+            rebuiltNodes.reset();
+            duplicatesRejected.reset();
+        }
+
+        //Flat name to value map, histograms as <name>.count/.sum/.max/.p50/.p99
+        public Map<String, Long> snapshot() {
+            Map<String, Long> values = new LinkedHashMap<>();
+            put(values, "add.comparisons", addComparisons);
+            put(values, "add.pathLength", addPathLength);
+            values.put("add.duplicatesRejected", duplicatesRejected.sum());
+            put(values, "delete.pathLength", deletePathLength);
+            put(values, "at.pathLength", atPathLength);
+            put(values, "rank.comparisons", rankComparisons);
+            put(values, "rebuild.nanos", rebuildNanos);
+            values.put("rebuild.nodes", rebuiltNodes.sum());
+            return values;
+        }
+
+        private static void put(Map<String, Long> values, String name, Histogram histogram) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            values.put(name + ".count", snapshot.count);
+            values.put(name + ".sum", snapshot.sum);
+            values.put(name + ".max", snapshot.max);
+            values.put(name + ".p50", snapshot.quantile(0.5));
+            values.put(name + ".p99", snapshot.quantile(0.99));
+        }
+    }
+}
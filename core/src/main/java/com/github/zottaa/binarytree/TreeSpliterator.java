@@ -0,0 +1,81 @@
+package com.github.zottaa.binarytree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+//Covers the index range [index, end) of a tree and splits it in half by index,
+//seeking through the subtree weights, so every split is exact
+class TreeSpliterator<T> implements Spliterator<T> {
+    private final BinaryTree<T> tree;
+    private final Comparator<? super T> comparator;
+    private int index;
+    private final int end;
+    private Iterator<T> iterator;
+
+    TreeSpliterator(BinaryTree<T> tree, int index, int end, Comparator<? super T> comparator) {
+        this.tree = tree;
+        this.index = index;
+        this.end = end;
+        this.comparator = comparator;
+        this.iterator = null;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (index >= end) {
+            return false;
+        }
+        if (iterator == null) {
+            iterator = tree.iterator(index);
+        }
+        index++;
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (index >= end) {
+            return;
+        }
+        if (iterator == null) {
+            tree.slice(index, end, action::accept);
+        } else {
+            while (index < end) {
+                action.accept(iterator.next());
+                index++;
+            }
+        }
+        index = end;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int middle = (index + end) >>> 1;
+        if (middle <= index) {
+            return null;
+        }
+        Spliterator<T> prefix = new TreeSpliterator<>(tree, index, middle, comparator);
+        index = middle;
+        iterator = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return end - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | SIZED | SUBSIZED | DISTINCT | NONNULL;
+    }
+
+    //The Spliterator contract reports natural ordering as null, not as naturalOrder()
+    @Override
+    public Comparator<? super T> getComparator() {
+        return (Object) comparator == Comparator.naturalOrder() ? null : comparator;
+    }
+}
@@ -0,0 +1,322 @@
+package com.github.zottaa.binarytree;
+
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.util.Comparator;
+
+public interface UserType extends Cloneable, Serializable {
+    public String typeName();
+
+    public Object create();
+
+    public Object readValue(InputStreamReader in);
+
+    public Object parseValue(String string);
+
+    public void writeValue(DataOutput out) throws IOException;
+
+    public UserType readValue(DataInput in) throws IOException;
+
+    public char fieldSeparator();
+
+    //Builds a value from the integer fields of its text form, null when they don't form one
+    public UserType fromFields(int[] fields, int count);
+
+    //Writes the fields fromFields() takes back and returns how many
+    public int toFields(int[] fields);
+
+    public Comparator<UserType> getTypeComparator();
+}
+
+class Point implements UserType {
+
+    //Orders points by squared distance from the origin; the squares are exact in 64 bits
+    //unsigned, which gives the same order as the euclidean distance without sqrt.
+    //Comparing with another type throws ClassCastException.
+    private static final Comparator<UserType> COMPARATOR = new Comparator<UserType>() {
+        @Override
+        public int compare(UserType o1, UserType o2) {
+            return Long.compareUnsigned(((Point) o1).key, ((Point) o2).key);
+        }
+    };
+
+    private final int x;
+    private final int y;
+    private final long key;
+
+    Point() {
+        this.x = 0;
+        this.y = 0;
+        this.key = 0;
+    }
+
+    Point(int _x, int _y) {
+        this.x = _x;
+        this.y = _y;
+        this.key = (long) _x * _x + (long) _y * _y;
+    }
+
+    @Override
+    public String typeName() {
+        return "Point";
+    }
+
+    @Override
+    public Object create() {
+        return new Point();
+    }
+
+    @Override
+    public Object readValue(InputStreamReader in) {
+        try {
+            BufferedReader reader = new BufferedReader(in);
+
+            String line = reader.readLine();
+
+            return parseValue(line);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public UserType parseValue(String string) {
+
+        String[] parts = string.split(",");
+
+        if (parts.length == 2) {
+            try {
+                int x = Integer.parseInt(parts[0]);
+                int y = Integer.parseInt(parts[1]);
+
+                return new Point(x, y);
+            } catch (NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void writeValue(DataOutput out) throws IOException {
+        Varint.writeSigned(out, x);
+        Varint.writeSigned(out, y);
+    }
+
+    @Override
+    public UserType readValue(DataInput in) throws IOException {
+        int x = Varint.readSigned(in);
+        int y = Varint.readSigned(in);
+        return new Point(x, y);
+    }
+
+    @Override
+    public char fieldSeparator() {
+        return ',';
+    }
+
+    @Override
+    public UserType fromFields(int[] fields, int count) {
+        return count == 2 ? new Point(fields[0], fields[1]) : null;
+    }
+
+    @Override
+    public int toFields(int[] fields) {
+        fields[0] = x;
+        fields[1] = y;
+        return 2;
+    }
+
+    @Override
+    public Comparator<UserType> getTypeComparator() {
+        return COMPARATOR;
+    }
+
+    @Override
+    protected Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return  Integer.toString(x) + "," + Integer.toString(y);
+    }
+}
+class Fraction implements UserType {
+
+    //The value (intPart * denominator + numerator) / denominator is kept as
+    //whole + remainder / divisor with 0 <= remainder < divisor, so comparing two
+    //fractions is a whole part comparison and one cross product that fits in a long
+    private static final Comparator<UserType> COMPARATOR = new Comparator<UserType>() {
+        @Override
+        public int compare(UserType o1, UserType o2) {
+            Fraction f1 = (Fraction) o1;
+            Fraction f2 = (Fraction) o2;
+
+            if (f1.whole != f2.whole) {
+                return Long.compare(f1.whole, f2.whole);
+            }
+            return Long.compare(f1.remainder * f2.divisor, f2.remainder * f1.divisor);
+        }
+    };
+
+    private final int numerator;
+    private final int denominator;
+    private final int intPart;
+    private final long whole;
+    private final long remainder;
+    private final long divisor;
+
+    Fraction() {
+        this.intPart = 0;
+        this.denominator = 1;
+        this.numerator = 0;
+        this.whole = 0;
+        this.remainder = 0;
+        this.divisor = 1;
+    }
+
+    Fraction(int intPart, int numerator, int denominator) {
+        if (denominator == 0) {
+            throw new ArithmeticException("Denominator cannot be zero");
+        }
+        this.intPart = intPart;
+        this.numerator = numerator;
+        this.denominator = denominator;
+
+        long total = (long) intPart * denominator + numerator;
+        long divisor = denominator;
+        if (divisor < 0) {
+            total = -total;
+            divisor = -divisor;
+        }
+        this.whole = Math.floorDiv(total, divisor);
+        this.remainder = Math.floorMod(total, divisor);
+        this.divisor = divisor;
+    }
+
+    Fraction(int numerator, int denominator) {
+        this(numerator < denominator || denominator == 0 ? 0 : numerator / denominator,
+                numerator < denominator || denominator == 0 ? numerator : numerator % denominator,
+                denominator);
+    }
+
+    @Override
+    public String typeName() {
+        return "Fraction";
+    }
+
+    @Override
+    public Object create() {
+        return new Fraction();
+    }
+
+    @Override
+    public Object readValue(InputStreamReader in) {
+        try {
+            BufferedReader reader = new BufferedReader(in);
+
+            String line = reader.readLine();
+
+            return parseValue(line);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public UserType parseValue(String string) {
+        String[] parts = string.split("/");
+        try {
+            if (parts.length == 2) {
+
+                int numerator = Integer.parseInt(parts[0]);
+                int denominator = Integer.parseInt(parts[1]);
+
+                return new Fraction(numerator, denominator);
+
+            } else if (parts.length == 3) {
+                int intPart = Integer.parseInt(parts[0]);
+                int numerator = Integer.parseInt(parts[1]);
+                int denominator = Integer.parseInt(parts[2]);
+
+                return new Fraction(intPart, numerator, denominator);
+            }
+        } catch(NumberFormatException e){
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    @Override
+    public void writeValue(DataOutput out) throws IOException {
+        Varint.writeSigned(out, intPart);
+        Varint.writeSigned(out, numerator);
+        Varint.writeSigned(out, denominator);
+    }
+
+    @Override
+    public UserType readValue(DataInput in) throws IOException {
+        int intPart = Varint.readSigned(in);
+        int numerator = Varint.readSigned(in);
+        int denominator = Varint.readSigned(in);
+        return new Fraction(intPart, numerator, denominator);
+    }
+
+    @Override
+    public char fieldSeparator() {
+        return '/';
+    }
+
+    @Override
+    public UserType fromFields(int[] fields, int count) {
+        if (count == 2 && fields[1] != 0) {
+            return new Fraction(fields[0], fields[1]);
+        } else if (count == 3 && fields[2] != 0) {
+            return new Fraction(fields[0], fields[1], fields[2]);
+        }
+        return null;
+    }
+
+    @Override
+    public int toFields(int[] fields) {
+        fields[0] = intPart;
+        fields[1] = numerator;
+        fields[2] = denominator;
+        return 3;
+    }
+
+    @Override
+    public Comparator<UserType> getTypeComparator() {
+        return COMPARATOR;
+    }
+
+    @Override
+    protected Object clone() {
+        try {
+            return super.clone();
+        } catch (CloneNotSupportedException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (this.intPart != 0) {
+            return Integer.toString(this.intPart * this.denominator + this.numerator) + "/" + Integer.toString(this.denominator);
+        } else {
+            return Integer.toString(this.numerator) + "/" + Integer.toString(this.denominator);
+        }
+    }
+}
+
@@ -0,0 +1,75 @@
+package com.github.zottaa.binarytree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//LEB128 style variable-length ints: 7 bits per byte, high bit set while more bytes follow.
+//Signed values are zig-zag mapped first so small negative numbers stay short.
+final class Varint {
+    static final int MAX_LENGTH = 5;
+
+    private Varint() {
+    }
+
+    static void writeUnsigned(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeSigned(DataOutput out, int value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 31));
+    }
+
+    //Writes at most MAX_LENGTH bytes at position and returns the position after them
+    static int writeUnsigned(byte[] out, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    static int writeSigned(byte[] out, int position, int value) {
+        return writeUnsigned(out, position, (value << 1) ^ (value >> 31));
+    }
+
+    static int readUnsigned(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readSigned(DataInput in) throws IOException {
+        int value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int readUnsigned(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readSigned(ByteBuffer in) throws IOException {
+        int value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,280 @@
+package com.github.zottaa.binarytree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+//Runs random operations on every engine of TreeFactory next to a TreeSet and compares the results
+public class BinaryTreeEnginesTest {
+    private static final int OPERATIONS = 4000;
+    private static final int VALUES = 3000;
+
+    @Test
+    public void matchesTreeSetUnderRandomOperations() {
+        TreeFactory treeFactory = new TreeFactory();
+        for (String name : treeFactory.getEngineNameList()) {
+            for (long seed = 1; seed <= 3; seed++) {
+                BinaryTree<Integer> tree = treeFactory.getTreeByName(name);
+                fuzz(name + "/" + seed, tree, new Random(seed));
+            }
+        }
+    }
+
+    @Test
+    public void matchesTreeSetWithRebalancePolicy() {
+        for (boolean rebuildSubtree : new boolean[]{false, true}) {
+            BinaryTree.Base<Integer> tree = new BinaryTree.Base<>();
+            tree.setRebalancePolicy(new RebalancePolicy(2, rebuildSubtree));
+            fuzz("policy/" + rebuildSubtree, tree, new Random(7));
+        }
+    }
+
+    @Test
+    public void sortedInsertsKeepPolicyHeight() {
+        BinaryTree.Base<Integer> tree = new BinaryTree.Base<>();
+        tree.setRebalancePolicy(new RebalancePolicy(1.5, true));
+        for (int i = 0; i < 100_000; i++) {
+            tree.add(i);
+        }
+        //the height is a high-water mark, which includes the one add past the limit before each repair
+        assertTrue("height " + tree.getHeight(), tree.getHeight() <= 1.5 * log2(tree.size()) + 2);
+        assertTrue("average depth " + tree.getAverageDepth(), tree.getAverageDepth() <= 1.5 * log2(tree.size()));
+        assertEquals(Integer.valueOf(50_000), tree.at(50_000));
+    }
+
+    //Checks the weight bound on every node, not only the contents, after each operation
+    @Test
+    public void balancedEnginesKeepWeightBound() {
+        for (long seed = 1; seed <= 3; seed++) {
+            BinaryTree.Balanced<Integer> balanced = new BinaryTree.Balanced<>();
+            PackedTree<Integer> packed = new PackedTree<>();
+            Random random = new Random(seed);
+            for (int step = 0; step < 6000; step++) {
+                int value = random.nextInt(VALUES);
+                int index = random.nextInt(balanced.size() + 1);
+                if (random.nextInt(3) > 0 || balanced.isEmpty()) {
+                    assertEquals(balanced.add(value), packed.add(value));
+                } else {
+                    assertEquals(balanced.delete(index), packed.delete(index));
+                }
+                assertEquals("Balanced step " + step, 0, balanced.unbalancedCount());
+                assertEquals("Packed step " + step, 0, packed.unbalancedCount());
+            }
+        }
+    }
+
+    @Test
+    public void deletesBelowTheMiddleKeepWeightBound() {
+        BinaryTree.Balanced<Integer> balanced = new BinaryTree.Balanced<>();
+        PackedTree<Integer> packed = new PackedTree<>();
+        for (int i = 0; i < 20_000; i++) {
+            balanced.add(i);
+            packed.add(i);
+        }
+        //the item just before the middle is often a right-child leaf
+        while (balanced.size() > 1) {
+            int index = balanced.size() / 2 - 1;
+            assertTrue(balanced.delete(index));
+            assertTrue(packed.delete(index));
+            if (balanced.size() % 97 == 0) {
+                assertEquals("Balanced size " + balanced.size(), 0, balanced.unbalancedCount());
+                assertEquals("Packed size " + packed.size(), 0, packed.unbalancedCount());
+            }
+        }
+    }
+
+    //Rebalancing after an add must not make comparator calls the metrics leave out
+    @Test
+    public void addMetricsCountEveryComparison() {
+        final long[] comparisons = new long[1];
+        BinaryTree.Balanced<Integer> tree = new BinaryTree.Balanced<>(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                comparisons[0]++;
+                return a.compareTo(b);
+            }
+        });
+        TreeMetrics.Base metrics = new TreeMetrics.Base();
+        tree.setMetrics(metrics);
+        Random random = new Random(19);
+        for (int i = 0; i < 20_000; i++) {
+            tree.add(random.nextInt(VALUES * 10));
+        }
+        assertEquals(Long.valueOf(comparisons[0]), metrics.snapshot().get("add.comparisons.sum"));
+    }
+
+    @Test
+    public void emptyTreeQueries() {
+        TreeFactory treeFactory = new TreeFactory();
+        for (String name : treeFactory.getEngineNameList()) {
+            BinaryTree<Integer> tree = treeFactory.getTreeByName(name);
+            assertTrue(name, tree.isEmpty());
+            assertNull(name, tree.at(0));
+            assertFalse(name, tree.delete(0));
+            assertEquals(name, 0, tree.rank(5));
+            assertEquals(name, 0, tree.countInRange(1, 10));
+            assertFalse(name, tree.iterator().hasNext());
+            assertEquals(name, "", tree.toString());
+        }
+    }
+
+    private static void fuzz(String name, BinaryTree<Integer> tree, Random random) {
+        NavigableSet<Integer> expected = new TreeSet<>();
+        for (int step = 0; step < OPERATIONS; step++) {
+            int operation = random.nextInt(100);
+            if (operation < 45) {
+                int value = random.nextInt(VALUES);
+                assertEquals(name + " add", expected.add(value), tree.add(value));
+            } else if (operation < 70) {
+                int index = random.nextInt(expected.size() + 2) - 1;
+                boolean inRange = index >= 0 && index < expected.size();
+                if (inRange) {
+                    expected.remove(get(expected, index));
+                }
+                assertEquals(name + " delete", inRange, tree.delete(index));
+            } else if (operation < 80) {
+                int value = random.nextInt(VALUES);
+                assertEquals(name + " rank", expected.headSet(value, false).size(), tree.rank(value));
+                int to = value + random.nextInt(VALUES / 4);
+                assertEquals(name + " countInRange", expected.subSet(value, true, to, true).size(),
+                        tree.countInRange(value, to));
+            } else if (operation < 84) {
+                List<Integer> batch = randomValues(random, random.nextBoolean() ? 5 : 500);
+                int before = expected.size();
+                expected.addAll(batch);
+                assertEquals(name + " addAll", expected.size() - before, tree.addAll(batch));
+            } else if (operation < 87) {
+                int[] indices = new int[random.nextBoolean() ? 3 : expected.size() / 3 + 1];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = random.nextInt(expected.size() + 10) - 5;
+                }
+                TreeSet<Integer> removed = new TreeSet<>();
+                List<Integer> items = new ArrayList<>(expected);
+                for (int index : indices) {
+                    if (index >= 0 && index < items.size()) {
+                        removed.add(items.get(index));
+                    }
+                }
+                expected.removeAll(removed);
+                assertEquals(name + " deleteAll", removed.size(), tree.deleteAll(indices));
+            } else if (operation < 90) {
+                int from = random.nextInt(expected.size() + 4) - 2;
+                int to = from + random.nextInt(random.nextBoolean() ? 4 : expected.size() / 2 + 1);
+                List<Integer> items = new ArrayList<>(expected);
+                int removed = 0;
+                for (int i = Math.max(from, 0); i < Math.min(to, items.size()); i++) {
+                    expected.remove(items.get(i));
+                    removed++;
+                }
+                assertEquals(name + " deleteRange", removed, tree.deleteRange(from, to));
+            } else if (operation < 92) {
+                List<Integer> items = randomValues(random, random.nextInt(VALUES / 2));
+                expected.clear();
+                expected.addAll(items);
+                tree.bulkLoad(items);
+            } else if (operation < 95) {
+                tree.balance();
+            } else if (operation < 96) {
+                expected.clear();
+                tree.clear();
+            } else {
+                checkAll(name, tree, expected, random);
+            }
+            assertEquals(name + " size", expected.size(), tree.size());
+        }
+        checkAll(name, tree, expected, random);
+    }
+
+    private static void checkAll(String name, BinaryTree<Integer> tree, NavigableSet<Integer> expected, Random random) {
+        List<Integer> items = new ArrayList<>(expected);
+        assertEquals(name + " isEmpty", items.isEmpty(), tree.isEmpty());
+
+        final List<Integer> inOrder = new ArrayList<>();
+        tree.forEach(new ElementProcessor<Integer>() {
+            @Override
+            public void toDo(Integer v) {
+                inOrder.add(v);
+            }
+        });
+        assertEquals(name + " forEach", items, inOrder);
+
+        final List<Integer> fromRoot = new ArrayList<>();
+        tree.forEachFromRoot(new ElementProcessor<Integer>() {
+            @Override
+            public void toDo(Integer v) {
+                fromRoot.add(v);
+            }
+        });
+        assertEquals(name + " forEachFromRoot", expected, new TreeSet<>(fromRoot));
+        assertEquals(name + " forEachFromRoot size", items.size(), fromRoot.size());
+
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(name + " at", items.get(i), tree.at(i));
+        }
+        assertNull(name + " at past the end", tree.at(items.size()));
+
+        int from = random.nextInt(items.size() + 2) - 1;
+        int to = from + random.nextInt(items.size() + 2);
+        final List<Integer> slice = new ArrayList<>();
+        tree.slice(from, to, new ElementProcessor<Integer>() {
+            @Override
+            public void toDo(Integer v) {
+                slice.add(v);
+            }
+        });
+        assertEquals(name + " slice", items.subList(Math.min(Math.max(from, 0), items.size()),
+                Math.max(Math.min(to, items.size()), Math.min(Math.max(from, 0), items.size()))), slice);
+
+        int start = random.nextInt(items.size() + 1);
+        List<Integer> iterated = new ArrayList<>();
+        for (Iterator<Integer> iterator = tree.iterator(start); iterator.hasNext(); ) {
+            iterated.add(iterator.next());
+        }
+        assertEquals(name + " iterator", items.subList(start, items.size()), iterated);
+
+        if (!items.isEmpty()) {
+            assertNull(name + " natural order comparator", tree.spliterator().getComparator());
+        }
+        assertEquals(name + " stream", items, tree.stream().collect(Collectors.toList()));
+        assertEquals(name + " parallel stream", items, tree.stream().parallel().collect(Collectors.toList()));
+        long even = 0;
+        for (Integer item : items) {
+            if (item % 2 == 0) {
+                even++;
+            }
+        }
+        assertEquals(name + " parallel filter", even, tree.stream().parallel().filter(v -> v % 2 == 0).count());
+    }
+
+    private static List<Integer> randomValues(Random random, int count) {
+        List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(random.nextInt(VALUES));
+        }
+        return values;
+    }
+
+    private static Integer get(NavigableSet<Integer> set, int index) {
+        Iterator<Integer> iterator = set.iterator();
+        for (int i = 0; i < index; i++) {
+            iterator.next();
+        }
+        return iterator.next();
+    }
+
+    private static double log2(int size) {
+        return Math.log(Math.max(size, 2)) / Math.log(2);
+    }
+}
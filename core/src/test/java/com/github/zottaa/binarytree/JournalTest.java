@@ -0,0 +1,175 @@
+package com.github.zottaa.binarytree;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replaysLoggedOperations() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        Random random = new Random(11);
+        for (int i = 0; i < 2_000; i++) {
+            apply(journal, tree, random);
+        }
+        journal.close();
+
+        assertEquals(SerializeTest.strings(tree), SerializeTest.strings(new Journal(directory).load()));
+    }
+
+    @Test
+    public void dropsTornTail() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        for (int i = 0; i < 10; i++) {
+            Point point = new Point(i, i);
+            tree.add(point);
+            journal.logAdd(point);
+        }
+        List<String> beforeLast = SerializeTest.strings(tree);
+        journal.logAdd(new Point(100, 100));
+        journal.close();
+
+        File log = new File(directory, "journal-0.log");
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+        Journal reopened = new Journal(directory);
+        BinaryTree<UserType> loaded = reopened.load();
+        assertEquals(beforeLast, SerializeTest.strings(loaded));
+
+        //the torn record is cut off, so records appended after it replay as well
+        Point point = new Point(200, 200);
+        loaded.add(point);
+        reopened.logAdd(point);
+        reopened.close();
+        assertEquals(SerializeTest.strings(loaded), SerializeTest.strings(new Journal(directory).load()));
+    }
+
+    @Test
+    public void dropsCorruptedRecordAndEverythingAfterIt() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        Point first = new Point(1, 1);
+        tree.add(first);
+        journal.logAdd(first);
+        long valid = new File(directory, "journal-0.log").length();
+        journal.logAdd(new Point(2, 2));
+        journal.logAdd(new Point(3, 3));
+        journal.close();
+
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "journal-0.log"), "rw")) {
+            file.seek(valid + 2);
+            file.write(0x7F);
+        }
+        assertEquals(SerializeTest.strings(tree), SerializeTest.strings(new Journal(directory).load()));
+        assertEquals(valid, new File(directory, "journal-0.log").length());
+    }
+
+    @Test
+    public void compactionStartsNextGeneration() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        Random random = new Random(23);
+        for (int i = 0; i < 500; i++) {
+            apply(journal, tree, random);
+        }
+        journal.compact(tree, "Point");
+        for (int i = 0; i < 500; i++) {
+            apply(journal, tree, random);
+        }
+        journal.close();
+
+        List<String> names = Arrays.asList(directory.list());
+        assertTrue(names.toString(), names.contains("snapshot-1.bin"));
+        assertFalse(names.toString(), names.contains("journal-0.log"));
+        assertEquals(SerializeTest.strings(tree), SerializeTest.strings(new Journal(directory).load()));
+    }
+
+    @Test
+    public void interruptedCompactionKeepsNewestSnapshot() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        Random random = new Random(29);
+        for (int i = 0; i < 300; i++) {
+            apply(journal, tree, random);
+        }
+        journal.compact(tree, "Point");
+        journal.close();
+        //as if the previous generation had not been deleted yet
+        assertTrue(new File(directory, "snapshot-0.bin").createNewFile());
+        assertTrue(new File(directory, "journal-0.log").createNewFile());
+
+        assertEquals(SerializeTest.strings(tree), SerializeTest.strings(new Journal(directory).load()));
+        assertFalse(new File(directory, "snapshot-0.bin").exists());
+        assertFalse(new File(directory, "journal-0.log").exists());
+    }
+
+    @Test
+    public void needsCompactionOnceLogOutgrowsThreshold() throws IOException {
+        Journal journal = new Journal(directory);
+        BinaryTree<UserType> tree = journal.load();
+        assertFalse(journal.needsCompaction());
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; !journal.needsCompaction(); i++) {
+            Point point = new Point(i, -i);
+            points.add(point);
+            tree.add(point);
+            journal.logAdd(point);
+        }
+        journal.compact(tree, "Point");
+        assertFalse(journal.needsCompaction());
+        journal.close();
+        assertEquals(points.size(), new Journal(directory).load().size());
+    }
+
+    private static void apply(Journal journal, BinaryTree<UserType> tree, Random random) throws IOException {
+        int operation = random.nextInt(20);
+        if (operation < 13) {
+            Point point = new Point(random.nextInt(500), random.nextInt(500));
+            if (tree.add(point)) {
+                journal.logAdd(point);
+            }
+        } else if (operation < 19) {
+            int index = random.nextInt(tree.size() + 1);
+            if (tree.delete(index)) {
+                journal.logDelete(index);
+            }
+        } else {
+            tree.clear();
+            journal.logClear();
+        }
+    }
+}
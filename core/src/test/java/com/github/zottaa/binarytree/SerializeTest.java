@@ -0,0 +1,205 @@
+package com.github.zottaa.binarytree;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SerializeTest {
+    private static final int TEXT = 0;
+    private static final int BINARY = 1;
+    private static final int COMPRESSED = 2;
+
+    @Test
+    public void everyFormatRoundTrips() throws IOException {
+        Random random = new Random(13);
+        for (String type : new UserFactory().getTypeNameList()) {
+            BinaryTree<UserType> tree = randomTree(type, 20_000, random);
+            for (int format = TEXT; format <= COMPRESSED; format++) {
+                byte[] data = write(tree, type, format);
+                for (boolean parallel : new boolean[]{false, true}) {
+                    Serialize.Base serialize = new Serialize.Base();
+                    BinaryTree<UserType> read = read(serialize, data, parallel);
+                    assertEquals(type + " format " + format, strings(tree), strings(read));
+                    assertEquals(0, serialize.getErrorCount());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyTreeRoundTrips() throws IOException {
+        BinaryTree<UserType> tree = new BinaryTree.Base<>();
+        for (int format = TEXT; format <= COMPRESSED; format++) {
+            BinaryTree<UserType> read = read(new Serialize.Base(), write(tree, "Fraction", format), false);
+            assertTrue(read.isEmpty());
+        }
+    }
+
+    @Test
+    public void compressedChecksumDetectsCorruption() throws IOException {
+        byte[] data = write(randomTree("Point", 5_000, new Random(3)), "Point", COMPRESSED);
+        data[data.length / 2] ^= 0x10;
+        try {
+            read(new Serialize.Base(), data, false);
+            fail("corruption was not detected");
+        } catch (IOException expected) {
+            //checksum mismatch or a malformed block, depending on the byte hit
+        }
+    }
+
+    @Test
+    public void truncatedBinaryFails() throws IOException {
+        for (int format = BINARY; format <= COMPRESSED; format++) {
+            byte[] data = write(randomTree("Point", 1_000, new Random(5)), "Point", format);
+            byte[] truncated = new byte[data.length - 7];
+            System.arraycopy(data, 0, truncated, 0, truncated.length);
+            try {
+                read(new Serialize.Base(), truncated, false);
+                fail("format " + format + " accepted a truncated file");
+            } catch (IOException expected) {
+                //reported as an IOException
+            }
+        }
+    }
+
+    @Test
+    public void malformedItemsAreSkippedAndReported() throws IOException {
+        String text = "Point\n1,2 3,x 4,5\r\n  ,6 7,8,9 10,11\n";
+        final List<String> errors = new ArrayList<>();
+        Serialize.Base serialize = new Serialize.Base();
+        serialize.setErrorListener(new ParseErrorListener() {
+            @Override
+            public void onError(int line, int column, String message) {
+                errors.add(line + ":" + column);
+            }
+        });
+        BinaryTree<UserType> tree = read(serialize, text.getBytes(StandardCharsets.ISO_8859_1), false);
+        List<UserType> expected = new ArrayList<>();
+        expected.add(new Point(1, 2));
+        expected.add(new Point(4, 5));
+        expected.add(new Point(10, 11));
+        assertEquals(strings(new BinaryTree.Base<>(expected)), strings(tree));
+        assertEquals(3, serialize.getErrorCount());
+        //one-based columns of the first character of each malformed item
+        assertEquals("[2:5, 3:3, 3:6]", errors.toString());
+    }
+
+    //Every chunk boundary must give the same items and the same error positions as one sequential pass
+    @Test
+    public void parallelChunksMatchSequentialParse() {
+        Random random = new Random(17);
+        String[] pool = {"1", "-1", "0", "+5", "2147483647", "-2147483648", "2147483648", "", "-", "x", "3", "7"};
+        for (String type : new UserFactory().getTypeNameList()) {
+            UserType builder = new UserFactory().getBuilderByName(type);
+            String separator = String.valueOf(builder.fieldSeparator());
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 20_000; i++) {
+                int fields = 1 + random.nextInt(4);
+                for (int k = 0; k < fields; k++) {
+                    if (k > 0) {
+                        text.append(separator);
+                    }
+                    text.append(pool[random.nextInt(pool.length)]);
+                }
+                int gap = random.nextInt(6);
+                text.append(gap == 0 ? "\r\n" : gap == 1 ? "\n" : gap == 2 ? "  " : " ");
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+            List<String> sequentialErrors = new ArrayList<>();
+            List<UserType> sequential = new ArrayList<>();
+            new TextParser(builder, recorder(sequentialErrors), new Progress(null))
+                    .parse(ByteBuffer.wrap(bytes), 2, 0, sequential);
+            BinaryTree<UserType> expected = new BinaryTree.Base<>(sequential);
+
+            for (int chunks = 1; chunks <= 7; chunks++) {
+                List<String> parallelErrors = new ArrayList<>();
+                ParallelTextImport parallelImport = new ParallelTextImport(builder, recorder(parallelErrors), new Progress(null));
+                UserType[] parallel = parallelImport.parse(ByteBuffer.wrap(bytes), 2, chunks);
+                List<String> merged = new ArrayList<>();
+                for (int i = 0; i < parallelImport.getCount(); i++) {
+                    merged.add(parallel[i].toString());
+                }
+                //already sorted and distinct, without a tree in between
+                assertEquals(type + " items, " + chunks + " chunks", strings(expected), merged);
+                assertEquals(type + " errors, " + chunks + " chunks", sequentialErrors, parallelErrors);
+                assertEquals(sequentialErrors.size(), parallelImport.getErrorCount());
+            }
+        }
+    }
+
+    @Test
+    public void wrongTypeIsRejected() throws IOException {
+        try {
+            read(new Serialize.Base(), "Circle\n1,2\n".getBytes(StandardCharsets.ISO_8859_1), false);
+            fail("unknown type was accepted");
+        } catch (IllegalArgumentException expected) {
+            //the header names no known type
+        }
+    }
+
+    private static ParseErrorListener recorder(final List<String> errors) {
+        return new ParseErrorListener() {
+            @Override
+            public void onError(int line, int column, String message) {
+                errors.add(line + ":" + column + " " + message);
+            }
+        };
+    }
+
+    private static BinaryTree<UserType> randomTree(String type, int count, Random random) {
+        UserType builder = new UserFactory().getBuilderByName(type);
+        int[] fields = new int[3];
+        List<UserType> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fields[0] = random.nextInt(2_000_001) - 1_000_000;
+            fields[1] = random.nextInt(1000) + 1;
+            fields[2] = random.nextInt(1000) + 1;
+            items.add(builder.fromFields(fields, type.equals("Point") ? 2 : 3));
+        }
+        return new BinaryTree.Base<>(items);
+    }
+
+    private static byte[] write(BinaryTree<UserType> tree, String type, int format) throws IOException {
+        Serialize.Base serialize = new Serialize.Base();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (format == TEXT) {
+            serialize.serialize(tree, type, Channels.newChannel(output));
+        } else if (format == BINARY) {
+            serialize.serializeBinary(tree, type, Channels.newChannel(output));
+        } else {
+            serialize.serializeCompressed(tree, type, true, Channels.newChannel(output));
+        }
+        return output.toByteArray();
+    }
+
+    private static BinaryTree<UserType> read(Serialize.Base serialize, byte[] data, boolean parallel) throws IOException {
+        ByteArrayInputStream input = new ByteArrayInputStream(data);
+        return parallel
+                ? serialize.deserializeParallel(Channels.newChannel(input))
+                : serialize.deserialize(Channels.newChannel(input));
+    }
+
+    static List<String> strings(BinaryTree<UserType> tree) {
+        final List<String> strings = new ArrayList<>(tree.size());
+        tree.forEach(new ElementProcessor<UserType>() {
+            @Override
+            public void toDo(UserType v) {
+                strings.add(v.toString());
+            }
+        });
+        return strings;
+    }
+}
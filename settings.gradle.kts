@@ -15,3 +15,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "BinaryTree"
 include(":app")
+include(":core")